@@ -37,10 +37,14 @@ import android.os.Handler;
 import com.imgtec.di.PerApp;
 import com.imgtec.sesame.data.api.CredentialsWrapper;
 import com.imgtec.sesame.data.DataModule;
+import com.imgtec.sesame.data.ConnectionWarmer;
 import com.imgtec.sesame.data.DataService;
+import com.imgtec.sesame.data.ExecutorPools;
+import com.imgtec.sesame.data.RequestScheduler;
 import com.imgtec.sesame.data.api.HostWrapper;
 import com.imgtec.sesame.data.api.ApiModule;
 import com.imgtec.sesame.data.api.RestApiService;
+import com.imgtec.sesame.data.api.RttEstimator;
 import com.imgtec.sesame.presentation.helpers.NetworkHelper;
 
 import javax.inject.Named;
@@ -83,6 +87,14 @@ public interface ApplicationComponent {
 
   DataService getDataService();
 
+  ConnectionWarmer getConnectionWarmer();
+
+  RequestScheduler getRequestScheduler();
+
+  ExecutorPools getExecutorPools();
+
+  RttEstimator getRttEstimator();
+
   NetworkHelper getNetworkHelper();
 
   RestApiService getRestApiService();
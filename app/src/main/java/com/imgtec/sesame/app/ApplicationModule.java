@@ -32,14 +32,15 @@
 package com.imgtec.sesame.app;
 
 import android.content.Context;
+import android.net.NetworkInfo;
 import android.os.Handler;
 
 import com.imgtec.di.PerApp;
+import com.imgtec.sesame.data.ConnectionWarmer;
+import com.imgtec.sesame.data.DataService;
+import com.imgtec.sesame.data.EntrypointResolver;
 import com.imgtec.sesame.presentation.helpers.NetworkHelper;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
 import javax.inject.Named;
 
 import dagger.Module;
@@ -69,12 +70,6 @@ public final class ApplicationModule {
     return application;
   }
 
-  @Provides
-  @PerApp
-  ExecutorService provideExecutorService() {
-    return Executors.newFixedThreadPool(4);
-  }
-
   @Provides
   @PerApp
   @Named("Main")
@@ -83,7 +78,19 @@ public final class ApplicationModule {
   }
 
   @Provides @PerApp
-  NetworkHelper provideNetowrkHelper(Context context) {
-    return new NetworkHelper(context);
+  NetworkHelper provideNetowrkHelper(Context context, @Named("Main") Handler handler,
+                                     ConnectionWarmer connectionWarmer,
+                                     EntrypointResolver resolver,
+                                     DataService dataService) {
+    final NetworkHelper helper = new NetworkHelper(context, handler);
+    // registered first, so it runs before screens resume their requests
+    helper.addNetworkStateListener(state -> {
+      if (state == NetworkInfo.State.CONNECTED) {
+        connectionWarmer.evictConnections();
+        resolver.revalidate();
+        dataService.flushOutbox();
+      }
+    });
+    return helper;
   }
 }
@@ -0,0 +1,135 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+
+/**
+ * Base of {@link DataService} tasks. Keeps track of the scheduled task and the call in flight,
+ * so both can be aborted by {@link #cancel()}.
+ */
+abstract class CancellableTask implements Runnable, RequestScheduler.AsyncTask, Cancellable {
+
+  private final AtomicBoolean canceled = new AtomicBoolean(false);
+  private Future<?> future;
+  private Call<?> call;
+  private boolean aborted;
+
+  synchronized void setFuture(Future<?> future) {
+    this.future = future;
+    if (isCanceled()) {
+      future.cancel(false);
+    }
+  }
+
+  /**
+   * Enqueues call, it is canceled if task gets canceled before it completes. Callback is
+   * notified with {@link InterruptedIOException} if task has already been aborted.
+   */
+  <R> void enqueue(Call<R> call, Callback<R> callback) {
+    synchronized (this) {
+      if (!aborted) {
+        this.call = call;
+        call.enqueue(callback);
+        return;
+      }
+    }
+    callback.onFailure(call, new InterruptedIOException("Canceled"));
+  }
+
+  /**
+   * Runs the task in a {@link RequestScheduler} slot. By default the slot is released when
+   * {@link #run()} returns, tasks waiting for their calls override it to hold the slot until
+   * they are done.
+   */
+  @Override
+  public void run(Runnable done) {
+    try {
+      run();
+    }
+    finally {
+      done.run();
+    }
+  }
+
+  @Override
+  public void cancel() {
+    if (!canceled.compareAndSet(false, true)) {
+      return;
+    }
+
+    final Future<?> f;
+    synchronized (this) {
+      f = future;
+    }
+    if (f != null) {
+      f.cancel(false);
+    }
+    if (onCancel()) {
+      abort();
+    }
+  }
+
+  @Override
+  public boolean isCanceled() {
+    return canceled.get();
+  }
+
+  /**
+   * Called when task is canceled.
+   * @return true if work in flight should be aborted, false if it has to complete because
+   * someone else still waits for the result
+   */
+  boolean onCancel() {
+    return true;
+  }
+
+  /**
+   * Cancels the call in flight and fails the calls enqueued later, without marking the task
+   * canceled.
+   */
+  void abort() {
+    final Call<?> c;
+    synchronized (this) {
+      aborted = true;
+      c = call;
+    }
+    if (c != null) {
+      c.cancel();
+    }
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data;
+
+import android.content.SharedPreferences;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+import com.imgtec.sesame.data.api.CircuitBreakerInterceptor.CircuitOpenException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent queue of door commands which could not be sent. Commands are replayed in order
+ * with the idempotency key they were queued with, so a command which did reach the server
+ * before connection was lost is not performed twice. Commands older than {@link #TTL} are
+ * dropped, doors must not move long after the user asked for it.
+ * <p>
+ * Only commands which surely did not reach the server are queued, see {@link #isUnsent}, and
+ * only commands setting doors to a given position, see {@link #isReplayable}.
+ */
+public class CommandOutbox {
+
+  static final String KEY = "commands";
+  static final long TTL = TimeUnit.MINUTES.toMillis(1);
+  static final int MAX_COMMANDS = 8;
+
+  public static class Command {
+
+    @SerializedName("key")
+    @Expose
+    private String key;
+
+    @SerializedName("host")
+    @Expose
+    private String host;
+
+    @SerializedName("rel")
+    @Expose
+    private String rel;
+
+    @SerializedName("queuedAt")
+    @Expose
+    private long queuedAt;
+
+    Command(String key, String host, String rel, long queuedAt) {
+      this.key = key;
+      this.host = host;
+      this.rel = rel;
+      this.queuedAt = queuedAt;
+    }
+
+    /**
+     * @return value of Idempotency-Key header
+     */
+    public String getKey() {
+      return key;
+    }
+
+    public String getHost() {
+      return host;
+    }
+
+    /**
+     * @return relation of the entrypoint link the command is sent to
+     */
+    public String getRel() {
+      return rel;
+    }
+
+    public boolean isExpired() {
+      final long age = System.currentTimeMillis() - queuedAt;
+      return age < 0 || age > TTL;
+    }
+  }
+
+  private final Logger logger = LoggerFactory.getLogger(getClass().getSimpleName());
+  private final SharedPreferences sharedPreferences;
+  private final Gson gson;
+  private final List<Command> commands = new ArrayList<>();
+  private boolean loaded;
+
+  /**
+   * Commands are read lazily, outbox can be created on the main thread.
+   */
+  public CommandOutbox(SharedPreferences prefs, Gson gson) {
+    super();
+    this.sharedPreferences = prefs;
+    this.gson = gson;
+  }
+
+  /**
+   * @return new idempotency key of a command
+   */
+  public static String newKey() {
+    return UUID.randomUUID().toString();
+  }
+
+  /**
+   * Toggle is not replayed: the server is not known to honour its idempotency key, performed
+   * twice it would bring doors back where they were.
+   * @return true if command of given relation may be queued and replayed
+   */
+  public static boolean isReplayable(String rel) {
+    return "open".equals(rel) || "close".equals(rel);
+  }
+
+  /**
+   * Timeouts and deadlines are not included, request might have been processed by the server
+   * even though its response never arrived.
+   * @return true if the request failed before reaching the server: host unreachable,
+   * connection refused or circuit open
+   */
+  public static boolean isUnsent(Throwable t) {
+    return t instanceof ConnectException
+        || t instanceof NoRouteToHostException
+        || t instanceof UnknownHostException
+        || t instanceof CircuitOpenException;
+  }
+
+  /**
+   * Queues command, the oldest one is dropped if the outbox is full.
+   */
+  public synchronized void append(String key, String host, String rel) {
+    if (host == null || host.isEmpty() || !isReplayable(rel)) {
+      return;
+    }
+    load();
+    for (Command c: commands) {
+      if (c.key.equals(key)) {
+        return;
+      }
+    }
+    if (commands.size() >= MAX_COMMANDS) {
+      logger.warn("Outbox full, dropping command {}", commands.remove(0).rel);
+    }
+    commands.add(new Command(key, host, rel, System.currentTimeMillis()));
+    logger.debug("Queued '{}' command, {} pending", rel, commands.size());
+    save();
+  }
+
+  /**
+   * Drops expired commands.
+   * @return commands to replay, in order they were queued
+   */
+  public synchronized List<Command> pending() {
+    load();
+    final Iterator<Command> it = commands.iterator();
+    boolean dropped = false;
+    while (it.hasNext()) {
+      final Command c = it.next();
+      if (c.isExpired()) {
+        logger.warn("Dropping expired '{}' command", c.rel);
+        it.remove();
+        dropped = true;
+      }
+    }
+    if (dropped) {
+      save();
+    }
+    return new ArrayList<>(commands);
+  }
+
+  public synchronized void remove(Command command) {
+    if (commands.remove(command)) {
+      save();
+    }
+  }
+
+  /**
+   * Drops all commands queued for given host.
+   */
+  public synchronized void clear(String host) {
+    load();
+    final Iterator<Command> it = commands.iterator();
+    boolean dropped = false;
+    while (it.hasNext()) {
+      if (it.next().host.equals(host)) {
+        it.remove();
+        dropped = true;
+      }
+    }
+    if (dropped) {
+      save();
+    }
+  }
+
+  public synchronized boolean isEmpty() {
+    load();
+    return commands.isEmpty();
+  }
+
+  private void load() {
+    if (loaded) {
+      return;
+    }
+    loaded = true;
+    final String json = sharedPreferences.getString(KEY, null);
+    if (json == null) {
+      return;
+    }
+    try {
+      final Command[] stored = gson.fromJson(json, Command[].class);
+      if (stored != null) {
+        commands.addAll(Arrays.asList(stored));
+      }
+    }
+    catch (JsonParseException e) {
+      logger.warn("Dropping corrupted outbox");
+      sharedPreferences.edit().remove(KEY).apply();
+    }
+  }
+
+  /**
+   * Written asynchronously, callers never wait for the disk.
+   */
+  private void save() {
+    sharedPreferences.edit().putString(KEY, gson.toJson(commands.toArray(new Command[commands.size()]))).apply();
+  }
+}
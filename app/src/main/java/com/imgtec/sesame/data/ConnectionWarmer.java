@@ -0,0 +1,140 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data;
+
+import com.imgtec.sesame.data.api.CircuitBreakerInterceptor;
+import com.imgtec.sesame.data.api.HostWrapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.CacheControl;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Keeps a connection to the current host in the pool of {@link OkHttpClient}, so door commands
+ * don't pay for DNS lookup and TCP/TLS handshakes. Connection is opened, or kept from being
+ * closed as idle by the server, with a HEAD request to the host.
+ */
+public class ConnectionWarmer {
+
+  /**
+   * Shorter than common keep-alive timeouts of http servers.
+   */
+  static final long KEEP_WARM_PERIOD = TimeUnit.SECONDS.toMillis(25);
+
+  private final Logger logger = LoggerFactory.getLogger(getClass().getSimpleName());
+  private final OkHttpClient client;
+  private final HostWrapper hostWrapper;
+  private final ScheduledExecutorService executor;
+  private final AtomicBoolean probing = new AtomicBoolean(false);
+
+  public ConnectionWarmer(OkHttpClient client, HostWrapper hostWrapper,
+                          ScheduledExecutorService executor) {
+    super();
+    this.client = client;
+    this.hostWrapper = hostWrapper;
+    this.executor = executor;
+  }
+
+  /**
+   * Opens connection to the host unless probe is already in flight.
+   */
+  public void warmUp() {
+    final HttpUrl url = HttpUrl.parse(hostWrapper.getHost() != null ? hostWrapper.getHost() : "");
+    if (url == null || !probing.compareAndSet(false, true)) {
+      return;
+    }
+
+    final Request probe = new Request.Builder()
+        .url(url)
+        .head()
+        .cacheControl(CacheControl.FORCE_NETWORK)
+        // any response to HEAD of the host means the connection is up, not that api works
+        .tag(CircuitBreakerInterceptor.UNTRACKED)
+        .build();
+    client.newCall(probe).enqueue(new Callback() {
+      @Override
+      public void onFailure(Call call, IOException e) {
+        probing.set(false);
+        logger.debug("Warming up connection to {} failed: {}", url.host(), e.getMessage());
+      }
+
+      @Override
+      public void onResponse(Call call, Response response) throws IOException {
+        response.close();
+        probing.set(false);
+        logger.debug("Connection to {} is warm, pooled connections: {}", url.host(),
+            client.connectionPool().connectionCount());
+      }
+    });
+  }
+
+  /**
+   * Closes idle pooled connections, they may be bound to the network device has left.
+   */
+  public void evictConnections() {
+    logger.debug("Evicting {} idle connections", client.connectionPool().idleConnectionCount());
+    client.connectionPool().evictAll();
+  }
+
+  /**
+   * Warms connection up at once and then periodically until returned handle is canceled.
+   */
+  public Cancellable keepWarm() {
+    final ScheduledFuture<?> future = executor.scheduleWithFixedDelay(this::warmUp, 0,
+        KEEP_WARM_PERIOD, TimeUnit.MILLISECONDS);
+
+    return new Cancellable() {
+      @Override
+      public void cancel() {
+        future.cancel(false);
+      }
+
+      @Override
+      public boolean isCanceled() {
+        return future.isCancelled();
+      }
+    };
+  }
+}
@@ -37,19 +37,24 @@ import android.os.Handler;
 import android.provider.Settings;
 import android.support.annotation.NonNull;
 
+import com.google.gson.Gson;
 import com.imgtec.di.PerApp;
 import com.imgtec.sesame.app.App;
+import com.imgtec.sesame.data.api.ApiModule;
+import com.imgtec.sesame.data.api.HedgePolicy;
 import com.imgtec.sesame.data.api.HostWrapper;
+import com.imgtec.sesame.data.api.LogsDecoder;
+import com.imgtec.sesame.data.api.ResponseMemoryCache;
 import com.imgtec.sesame.data.api.RestApiService;
 
-
-import java.util.concurrent.Executors;
+import java.io.File;
 import java.util.concurrent.ScheduledExecutorService;
 
 import javax.inject.Named;
 
 import dagger.Module;
 import dagger.Provides;
+import okhttp3.OkHttpClient;
 
 /**
  *
@@ -58,6 +63,16 @@ import dagger.Provides;
 public class DataModule {
 
   static final String PREFS = "data";
+  static final String LINKS_PREFS = "links";
+  static final String SNAPSHOTS_DIR = "snapshots";
+  static final String OUTBOX_PREFS = "outbox";
+  static final int MAX_QUEUED_BACKGROUND_REQUESTS = 8;
+  /**
+   * State channel and one user command.
+   */
+  static final int RESERVED_REQUESTS_PER_HOST = 2;
+  static final int MAX_LOG_ITEMS = 200;
+  static final long MAX_LOG_BYTES = 256 * 1024;
 
   @Provides @PerApp
   SharedPreferences provideSharedPreferences(App application) {
@@ -70,17 +85,86 @@ public class DataModule {
   }
 
   @Provides @PerApp
-  ScheduledExecutorService provideScheduleExecutorService() {
-    return Executors.newScheduledThreadPool(4);
+  ExecutorPools provideExecutorPools() {
+    return new ExecutorPools(Runtime.getRuntime().availableProcessors(), ApiModule.MAX_REQUESTS);
+  }
+
+  @Provides @PerApp
+  ScheduledExecutorService provideScheduleExecutorService(@NonNull ExecutorPools pools) {
+    return pools.getScheduler();
+  }
+
+  /**
+   * Background tasks may take half of the slots, so there is always room for the visible screen.
+   * Slots are held while calls are in flight, so they are also kept below the per host limit
+   * of the http client: the state channel and a user command always get a connection instead
+   * of waiting in the dispatcher behind polls and logs.
+   */
+  @Provides @PerApp
+  RequestScheduler provideRequestScheduler(@NonNull ExecutorPools pools) {
+    final int maxRunning = Math.min(pools.getNetworkThreads(),
+        ApiModule.MAX_REQUESTS_PER_HOST - RESERVED_REQUESTS_PER_HOST);
+    return new RequestScheduler(pools.getNetwork(), maxRunning, Math.max(1, maxRunning / 2),
+        MAX_QUEUED_BACKGROUND_REQUESTS);
+  }
+
+  @Provides @PerApp
+  LinksCache provideLinksCache(@NonNull App application, @NonNull Gson gson) {
+    return new LinksCache(application.getSharedPreferences(LINKS_PREFS, Context.MODE_PRIVATE), gson);
+  }
+
+  @Provides @PerApp
+  EntrypointResolver provideEntrypointResolver(@NonNull RestApiService apiService,
+                                               @NonNull HostWrapper hostWrapper,
+                                               @NonNull LinksCache linksCache) {
+    return new EntrypointResolver(apiService, hostWrapper, linksCache);
+  }
+
+  @Provides @PerApp
+  LogsDecoder provideLogsDecoder(@NonNull Gson gson) {
+    return new LogsDecoder(gson, MAX_LOG_ITEMS, MAX_LOG_BYTES);
+  }
+
+  @Provides @PerApp
+  ConnectionWarmer provideConnectionWarmer(@NonNull OkHttpClient client,
+                                           @NonNull HostWrapper hostWrapper,
+                                           @NonNull ScheduledExecutorService executorService) {
+    return new ConnectionWarmer(client, hostWrapper, executorService);
+  }
+
+  @Provides @PerApp
+  SnapshotStore provideSnapshotStore(@NonNull App application, @NonNull Gson gson) {
+    return new SnapshotStore(new File(application.getCacheDir(), SNAPSHOTS_DIR), gson);
+  }
+
+  @Provides @PerApp
+  CommandOutbox provideCommandOutbox(@NonNull App application, @NonNull Gson gson) {
+    return new CommandOutbox(application.getSharedPreferences(OUTBOX_PREFS, Context.MODE_PRIVATE), gson);
+  }
+
+  @Provides @PerApp
+  DoorsStateChannel provideDoorsStateChannel(@NonNull OkHttpClient client, @NonNull Gson gson) {
+    return new DoorsStateChannel(client, gson);
   }
 
   @Provides @PerApp
   DataService provideDataService(@NonNull App application,
                                  @NonNull ScheduledExecutorService executorService,
+                                 @NonNull ExecutorPools pools,
+                                 @NonNull RequestScheduler scheduler,
                                  @NonNull @Named("Main") Handler handler,
                                  @NonNull HostWrapper hostWrapper,
-                                 @NonNull RestApiService apiService) {
+                                 @NonNull RestApiService apiService,
+                                 @NonNull EntrypointResolver resolver,
+                                 @NonNull DoorsStateChannel stateChannel,
+                                 @NonNull LogsDecoder logsDecoder,
+                                 @NonNull ResponseMemoryCache memoryCache,
+                                 @NonNull HedgePolicy hedgePolicy,
+                                 @NonNull SnapshotStore snapshots,
+                                 @NonNull CommandOutbox outbox) {
 
-    return new DataServiceImpl(executorService, handler, hostWrapper, apiService);
+    return new DataServiceImpl(executorService, pools.getCpu(), scheduler, handler, hostWrapper, apiService,
+        resolver, stateChannel, logsDecoder, memoryCache, hedgePolicy, snapshots, outbox,
+        StateUpdateMode.PUSH);
   }
 }
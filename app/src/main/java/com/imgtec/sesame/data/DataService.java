@@ -36,37 +36,66 @@ import com.imgtec.sesame.data.api.pojo.DoorsAction;
 import com.imgtec.sesame.data.api.pojo.DoorsEntrypoint;
 import com.imgtec.sesame.data.api.pojo.DoorsState;
 import com.imgtec.sesame.data.api.pojo.DoorsStatistics;
-import com.imgtec.sesame.data.api.pojo.Logs;
 
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
- *
+ * Requests return {@link Cancellable} handle, callback of canceled request is not notified.
+ * Statistics and logs are delivered as a snapshot first, see {@link SnapshotCallback}.
+ * Operations on the entrypoint fail with {@link DeadlineExceededException} when they don't
+ * complete within their {@link Deadline}.
  */
 public interface DataService {
 
-  void requestApi(DataCallback<DataService, Api> callback);
+  Cancellable requestApi(DataCallback<DataService, Api> callback);
 
-  void requestLogs(DataCallback<DataService, Logs> callback);
+  Cancellable requestLogs(LogsCallback callback);
 
-  void requestStatistics(DataCallback<DataService, DoorsStatistics> callback);
+  Cancellable requestStatistics(SnapshotCallback<DoorsStatistics> callback);
 
-  void requestState(DataCallback<DataService, DoorsState> callback);
+  Cancellable requestState(DataCallback<DataService, DoorsState> callback);
 
   void clearCache();
 
   AtomicReference<DoorsEntrypoint> getCachedEntryPoint();
 
-  void startPollingDoorState(DataCallback<DataService, DoorsState> callback);
+  /**
+   * Adds callback to receivers of state updates, polling already started is shared with it.
+   * Callback is notified on the polling thread, {@link #subscribeDoorState(DataCallback)}
+   * decouples slow subscribers.
+   * @return handle which removes the callback, polling stops with the last receiver
+   */
+  Cancellable startPollingDoorState(DataCallback<DataService, DoorsState> callback);
+
+  /**
+   * Removes all callbacks of {@link #startPollingDoorState(DataCallback)}, subscribers of
+   * {@link #subscribeDoorState(DataCallback)} keep getting updates.
+   */
   void stopPollingDoorState();
 
+  /**
+   * Subscribes to door state updates shared by all subscribers. Updates run while there is
+   * at least one subscriber, new subscriber gets the latest state first. Subscriber which
+   * can't keep up gets only the latest state.
+   * @return handle which unsubscribes
+   */
+  Cancellable subscribeDoorState(DataCallback<DataService, DoorsState> subscriber);
+
+  /**
+   * @return copy of the last known opened or closed state, never blocks
+   */
   DoorsState getLastDoorsState();
 
-  void performOperate();
+  Cancellable performOperate();
+
+  Cancellable openDoors(DataCallback<DataService, DoorsAction> callback);
 
-  void openDoors(DataCallback<DataService, DoorsAction> callback);
+  Cancellable closeDoors(DataCallback<DataService, DoorsAction> callback);
 
-  void closeDoors(DataCallback<DataService, DoorsAction> callback);
+  Cancellable resetStatistics(DataCallback<DataService, Void> callback);
 
-  void resetStatistics(DataCallback<DataService, Void> callback);
+  /**
+   * Replays door commands queued while offline, see {@link CommandQueuedException}.
+   */
+  void flushOutbox();
 }
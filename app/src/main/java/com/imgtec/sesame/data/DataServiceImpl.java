@@ -33,14 +33,20 @@ package com.imgtec.sesame.data;
 
 import android.os.Handler;
 
-import com.imgtec.sesame.data.api.DoorsHelper;
+import com.imgtec.sesame.data.RequestScheduler.Priority;
+import com.imgtec.sesame.data.api.CircuitBreakerInterceptor.CircuitOpenException;
+import com.imgtec.sesame.data.api.HedgePolicy;
 import com.imgtec.sesame.data.api.HostWrapper;
+import com.imgtec.sesame.data.api.LogsDecoder;
+import com.imgtec.sesame.data.api.LogsStreamCall;
+import com.imgtec.sesame.data.api.ResponseMemoryCache;
 import com.imgtec.sesame.data.api.RestApiService;
 import com.imgtec.sesame.data.api.pojo.Api;
 import com.imgtec.sesame.data.api.pojo.DoorsAction;
 import com.imgtec.sesame.data.api.pojo.DoorsEntrypoint;
 import com.imgtec.sesame.data.api.pojo.DoorsState;
 import com.imgtec.sesame.data.api.pojo.DoorsStatistics;
+import com.imgtec.sesame.data.api.pojo.Link;
 import com.imgtec.sesame.data.api.pojo.Logs;
 import com.imgtec.sesame.utils.Condition;
 
@@ -48,11 +54,23 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
+import okhttp3.Request;
 import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
 import retrofit2.Response;
 
 /**
@@ -60,239 +78,738 @@ import retrofit2.Response;
  */
 public class DataServiceImpl implements DataService {
 
+  static final String STATE_STREAM_REL = "state-stream";
+  static final long CHANNEL_RETRY_DELAY = TimeUnit.SECONDS.toMillis(30);
+  static final int LOGS_PAGE_SIZE = 50;
+  static final String STATS_SNAPSHOT = "stats";
+  static final String LOGS_SNAPSHOT = "logs";
+  static final long OUTBOX_RETRY_DELAY = TimeUnit.SECONDS.toMillis(10);
+
   private final Logger logger = LoggerFactory.getLogger(getClass().getSimpleName());
 
   private final ScheduledExecutorService executor;
+  private final Executor cpuExecutor;
+  private final RequestScheduler scheduler;
   private final Handler handler;
   private final HostWrapper hostWrapper;
   private final RestApiService apiService;
-  private final AtomicReference<DoorsEntrypoint> entrypoint;
+  private final EntrypointResolver resolver;
+  private final RequestCoalescer<DataService> coalescer = new RequestCoalescer<>();
+  private final PollingScheduler pollingScheduler;
+  private final AtomicBoolean pollInFlight = new AtomicBoolean(false);
+  private final AtomicBoolean tickSkipped = new AtomicBoolean(false);
+  private final AtomicReference<Cancellable> pollRequest = new AtomicReference<>();
+  private final DoorsStateChannel stateChannel;
+  private final LogsDecoder logsDecoder;
+  private final ResponseMemoryCache memoryCache;
+  private final HedgePolicy hedgePolicy;
+  private final SnapshotStore snapshots;
+  private final CommandOutbox outbox;
+  private final AtomicBoolean flushing = new AtomicBoolean(false);
+  private final StateUpdateMode updateMode;
   private boolean pollingEnabled;
+  private boolean streaming;
+  private StateFanout pollingCallback;
+  private ScheduledFuture<?> pollingFuture;
+  private ScheduledFuture<?> channelFuture;
+  private ScheduledFuture<?> outboxFuture;
 
-  private DoorsState doorState;
+  private final DoorsStateStore stateStore = new DoorsStateStore();
+  private final DoorsStateStream stateStream;
 
+  /**
+   * @param executorService timers, its tasks must not block
+   * @param cpuExecutor encoding of snapshots and delivery of state updates
+   */
   public DataServiceImpl(ScheduledExecutorService executorService,
+                         Executor cpuExecutor,
+                         RequestScheduler scheduler,
                          Handler handler,
                          HostWrapper hostWrapper,
-                         RestApiService apiService) {
+                         RestApiService apiService,
+                         EntrypointResolver resolver,
+                         DoorsStateChannel stateChannel,
+                         LogsDecoder logsDecoder,
+                         ResponseMemoryCache memoryCache,
+                         HedgePolicy hedgePolicy,
+                         SnapshotStore snapshots,
+                         CommandOutbox outbox,
+                         StateUpdateMode updateMode) {
     super();
     this.executor = executorService;
+    this.cpuExecutor = cpuExecutor;
+    this.scheduler = scheduler;
     this.handler = handler;
     this.hostWrapper = hostWrapper;
     this.apiService = apiService;
-    this.entrypoint = new AtomicReference<>(null);
+    this.resolver = resolver;
+    this.pollingScheduler = new PollingScheduler();
+    this.stateChannel = stateChannel;
+    this.logsDecoder = logsDecoder;
+    this.memoryCache = memoryCache;
+    this.hedgePolicy = hedgePolicy;
+    this.snapshots = snapshots;
+    this.outbox = outbox;
+    this.updateMode = updateMode;
+    this.stateStream = new DoorsStateStream(this, new DoorsStateStream.Upstream() {
+      @Override
+      public void start(DataCallback<DataService, DoorsState> sink) {
+        startPollingDoorState(sink);
+      }
+
+      @Override
+      public void stop(DataCallback<DataService, DoorsState> sink) {
+        stopPolling(sink);
+      }
+    }, cpuExecutor, executorService);
   }
 
   @Override
-  public void requestApi(DataCallback<DataService, Api> callback) {
-    executor.execute(() -> {
-      try {
-        Response<Api> api = apiService.api(hostWrapper.getHost()).execute();
-        ResponseBody error = api.errorBody();
-        if (error != null) {
-          throw new IOException(error.string());
-        }
-        callback.onSuccess(DataServiceImpl.this, api.body());
-      } catch (IOException e) {
-        callback.onFailure(DataServiceImpl.this, e);
+  public Cancellable requestApi(DataCallback<DataService, Api> callback) {
+    return submit(Priority.FOREGROUND, callback, new CancellableTask() {
+
+      @Override
+      public void run() {
+        enqueue(apiService.api(hostWrapper.getHost(), null), new Callback<Api>() {
+          @Override
+          public void onResponse(Call<Api> call, Response<Api> api) {
+            try {
+              ResponseBody error = api.errorBody();
+              if (error != null) {
+                throw new IOException(error.string());
+              }
+              if (!isCanceled()) {
+                callback.onSuccess(DataServiceImpl.this, api.body());
+              }
+            } catch (IOException e) {
+              onFailure(call, e);
+            }
+          }
+
+          @Override
+          public void onFailure(Call<Api> call, Throwable t) {
+            if (!isCanceled()) {
+              callback.onFailure(DataServiceImpl.this, t);
+            }
+          }
+        });
       }
     });
   }
 
   @Override
-  public void requestLogs(final DataCallback<DataService, Logs> callback) {
+  public Cancellable requestLogs(final LogsCallback callback) {
 
-    executor.execute(new EntryPointRequestor<DataService, Logs>(
-        DataServiceImpl.this, apiService, hostWrapper, callback) {
+    // streamed items can't be shared with other callers, so logs are not coalesced
+    return submit(Priority.FOREGROUND, callback, new SnapshotRequestor<Logs>(
+        LOGS_SNAPSHOT, Logs.class, null, callback) {
 
+      /**
+       * Items decoded before the failure have already been delivered, repeating would duplicate them.
+       */
       @Override
-      Response<Logs> onExecute(RestApiService service,
-                          HostWrapper hostWrapper,
-                          DoorsEntrypoint endpoint) throws IOException {
-
-        String logsUrl = endpoint.getLinkByRel("logs").getHref();
-        Response<Logs> logs = service.logs(logsUrl, 50, 0).execute();
+      int maxRetries() {
+        return 0;
+      }
 
-        return logs;
+      @Override
+      Call<Logs> createCall(RestApiService service,
+                            HostWrapper hostWrapper,
+                            DoorsEntrypoint endpoint) throws IOException {
+
+        String logsUrl = resolver.requireHref(endpoint, "logs");
+        LogsDecoder.Consumer consumer = logs -> {
+          if (!isCanceled()) {
+            callback.onLogs(DataServiceImpl.this, logs);
+          }
+        };
+        // head page is revalidated on every request, so it is never kept in memory
+        return new LogsStreamCall(service.logsStream(logsUrl, LOGS_PAGE_SIZE, 0), logsDecoder,
+            consumer);
       }
     });
   }
 
   @Override
-  public void requestStatistics(DataCallback<DataService, DoorsStatistics> callback) {
+  public Cancellable requestStatistics(SnapshotCallback<DoorsStatistics> callback) {
 
-    executor.execute(new EntryPointRequestor<DataService, DoorsStatistics>(
-        DataServiceImpl.this, apiService, hostWrapper, callback) {
+    return submit(Priority.FOREGROUND, callback, new SnapshotRequestor<DoorsStatistics>(
+        STATS_SNAPSHOT, DoorsStatistics.class, coalescer, callback) {
 
       @Override
-      Response<DoorsStatistics> onExecute(RestApiService service,
-                          HostWrapper hostWrapper,
-                          DoorsEntrypoint endpoint) throws IOException {
+      String coalescingKey(DoorsEntrypoint endpoint) throws IOException {
+        return "GET " + resolver.requireHref(endpoint, "stats");
+      }
 
-        Response<DoorsStatistics> stats = apiService
-            .statistics(endpoint.getLinkByRel("stats").getHref())
-            .execute();
+      @Override
+      Call<DoorsStatistics> createCall(RestApiService service,
+                                       HostWrapper hostWrapper,
+                                       DoorsEntrypoint endpoint) throws IOException {
 
-        return stats;
+        return apiService.statistics(resolver.requireHref(endpoint, "stats"));
       }
     });
   }
 
   @Override
-  public void requestState(final DataCallback<DataService, DoorsState> callback) {
-    executor.execute(new EntryPointRequestor<DataService, DoorsState>(
-        DataServiceImpl.this, apiService, hostWrapper, callback) {
+  public Cancellable requestState(final DataCallback<DataService, DoorsState> callback) {
+    return submit(Priority.FOREGROUND, callback, new StateRequestor(callback, 0, false));
+  }
 
-      @Override
-      Response<DoorsState> onExecute(RestApiService service, HostWrapper hostWrapper, DoorsEntrypoint endpoint) throws IOException {
-        Response<DoorsState> state = apiService.state(endpoint.getLinkByRel("state").getHref())
-            .execute();
-
-        DoorsState s = state.body();
-        if (DoorsHelper.isDoorOpened(s) || DoorsHelper.isDoorClosed(s)) {
-          synchronized (DataServiceImpl.this) {
-            doorState = s;
-          }
+  /**
+   * Delivers persisted snapshot of the resource before requesting it, and persists the result
+   * whenever it comes from the network.
+   */
+  private abstract class SnapshotRequestor<T> extends EntryPointRequestor<DataService, T> {
+
+    private final String name;
+    private final Class<T> type;
+    private final SnapshotCallback<T> callback;
+    private final String host;
+
+    SnapshotRequestor(String name, Class<T> type, RequestCoalescer<DataService> coalescer,
+                      SnapshotCallback<T> callback) {
+      super(DataServiceImpl.this, executor, apiService, hostWrapper, resolver, coalescer, callback);
+      this.name = name;
+      this.type = type;
+      this.callback = callback;
+      this.host = hostWrapper.getHost();
+    }
+
+    @Override
+    void onStart() {
+      final SnapshotStore.Snapshot<T> snapshot = snapshots.load(host, name, type);
+      if (snapshot != null && !isCanceled()) {
+        callback.onSnapshot(DataServiceImpl.this, snapshot.getValue(), snapshot.getAge());
+      }
+    }
+
+    @Override
+    void onResponse(Response<T> response) {
+      if (response.isSuccessful() && response.raw().networkResponse() != null) {
+        onHostReachable();
+        final T value = response.body();
+        try {
+          cpuExecutor.execute(() -> snapshots.save(host, name, value));
+        }
+        catch (RejectedExecutionException e) {
+          logger.debug("Snapshot '{}' not saved: {}", name, e.getMessage());
         }
+      }
+    }
+  }
 
-        return state;
+  /**
+   * Requests door state. Outcome of a poll is fed to {@link PollingScheduler}, state requested
+   * otherwise (e.g. by the user) does not change polling cadence.
+   */
+  private class StateRequestor extends EntryPointRequestor<DataService, DoorsState> {
+
+    private final long deadline;
+    private final boolean poll;
+    private volatile boolean responded;
+    private volatile boolean stale;
+
+    /**
+     * @param deadline time in milliseconds after which state request is abandoned, 0 means
+     *                 the default budget of operations applies
+     * @param poll true if outcome should be fed to the polling scheduler
+     */
+    StateRequestor(DataCallback<DataService, DoorsState> callback, long deadline, boolean poll) {
+      super(DataServiceImpl.this, executor, apiService, hostWrapper, resolver, coalescer, callback);
+      this.deadline = deadline;
+      this.poll = poll;
+    }
+
+    /**
+     * Poll is not shared, attached to another request it would never see the response
+     * it has to feed to the scheduler.
+     */
+    @Override
+    String coalescingKey(DoorsEntrypoint endpoint) throws IOException {
+      return poll ? null : "GET " + resolver.requireHref(endpoint, "state");
+    }
+
+    @Override
+    long budget() {
+      return deadline > 0 ? deadline : super.budget();
+    }
+
+    @Override
+    Throwable onFailure(Throwable t) {
+      if (t instanceof DeadlineExceededException) {
+        logger.warn("State request exceeded deadline of {}ms", budget());
       }
-    });
+      if (poll && t instanceof IOException && !responded && !isCanceled()) {
+        pollingScheduler.onFailure(null);
+      }
+      return t;
+    }
+
+    @Override
+    Call<DoorsState> createCall(RestApiService service, HostWrapper hostWrapper, DoorsEntrypoint endpoint) throws IOException {
+      return apiService.state(resolver.requireHref(endpoint, "state"));
+    }
+
+    @Override
+    void onResponse(Response<DoorsState> state) {
+      responded = true;
+
+      DoorsState s = state.body();
+      if (state.isSuccessful() && s != null && s.getState() != null
+          && !stateStore.offer(s, state.raw().sentRequestAtMillis())) {
+        // newer state has been observed (pushed) while the request was in flight
+        logger.debug("Polled state {} is stale, using {}", s.getState(), stateStore.get());
+        stale = true;
+        s = stateStore.get().getState();
+      }
+
+      if (state.isSuccessful()) {
+        onHostReachable();
+      }
+      if (!poll) {
+        return;
+      }
+      if (state.isSuccessful()) {
+        pollingScheduler.onStateReceived(s, state.headers());
+      }
+      else {
+        pollingScheduler.onFailure(state.headers());
+      }
+    }
+
+    @Override
+    DoorsState onResult(DoorsState result) {
+      return stale ? stateStore.get().getState() : result;
+    }
   }
 
   @Override
   public void clearCache() {
-    entrypoint.set(null);
+    resolver.clear();
+    // responses of the previous host
+    memoryCache.evictAll();
+
+    synchronized (this) {
+      if (pollingEnabled && updateMode == StateUpdateMode.PUSH) {
+        // channel may be connected to the previous host
+        stateChannel.close();
+        cancelChannelTask();
+        streaming = false;
+        scheduleChannelTask(pollingCallback, 0);
+      }
+    }
   }
 
   @Override
   public AtomicReference<DoorsEntrypoint> getCachedEntryPoint() {
-    return entrypoint;
+    return resolver.getCached();
   }
 
   @Override
-  public void startPollingDoorState(DataCallback<DataService, DoorsState> callback) {
+  public Cancellable startPollingDoorState(DataCallback<DataService, DoorsState> callback) {
     synchronized (this) {
-      if (!pollingEnabled) {
+      if (pollingEnabled) {
+        pollingCallback.add(callback);
+      }
+      else {
         pollingEnabled = true;
-        schedulePollingTask(callback);
+        pollingCallback = new StateFanout();
+        pollingCallback.add(callback);
+        pollingScheduler.reset();
+        if (updateMode == StateUpdateMode.PUSH) {
+          scheduleChannelTask(pollingCallback, 0);
+        }
+        else {
+          schedulePollingTask(pollingCallback, 0);
+        }
         logger.debug("Polling task started!");
       }
     }
+    return new PollingHandle(callback);
   }
 
   @Override
   public void stopPollingDoorState() {
+    stopPolling(null);
+  }
+
+  @Override
+  public Cancellable subscribeDoorState(DataCallback<DataService, DoorsState> subscriber) {
+    return stateStream.subscribe(subscriber);
+  }
+
+  /**
+   * @param callback receiver to remove, null removes all but the state stream; polling stops
+   *                 with the last receiver
+   */
+  private void stopPolling(DataCallback<DataService, DoorsState> callback) {
     synchronized (this) {
-      if (pollingEnabled) {
+      if (!pollingEnabled) {
+        return;
+      }
+      if (callback != null) {
+        pollingCallback.remove(callback);
+      }
+      else {
+        pollingCallback.retain(stateStream);
+      }
+      if (pollingCallback.isEmpty()) {
         pollingEnabled = false;
-        logger.debug("Polling task stopped!");
+        pollingCallback = null;
+        streaming = false;
+        cancelPollingTask();
+        cancelChannelTask();
+        stateChannel.close();
+        final Cancellable request = pollRequest.getAndSet(null);
+        if (request != null) {
+          request.cancel();
+        }
+        logger.debug("Polling task stopped! Queue wait: {}, {}, {}; {}",
+            scheduler.getMetrics(Priority.USER),
+            scheduler.getMetrics(Priority.FOREGROUND),
+            scheduler.getMetrics(Priority.BACKGROUND),
+            hedgePolicy.getMetrics());
       }
     }
   }
 
   @Override
-  public synchronized DoorsState getLastDoorsState() {
-    return doorState;
+  public DoorsState getLastDoorsState() {
+    final DoorsStateStore.Snapshot snapshot = stateStore.get();
+    return snapshot != null ? snapshot.getSettledState() : null;
   }
 
   @Override
-  public void performOperate() {
-    executor.execute(() -> {
+  public Cancellable performOperate() {
+    return submit(Priority.USER, null, new DoorCommandRequestor<Void>("operate",
+        new DataCallback<DataService, Void>() {
+          @Override
+          public void onSuccess(DataService service, Void result) {
+            logger.debug("Operate command sent");
+          }
 
-      try {
-        AtomicReference<DoorsEntrypoint> entrypoint = cacheEntryPointAndGet();
-        Response<Void> response = apiService.operate(entrypoint.get().getLinkByRel("operate").getHref()).execute();
+          @Override
+          public void onFailure(DataService service, Throwable t) {
+            logger.warn("Operate command failed: {}", t.getMessage());
+          }
+        }) {
 
-        ResponseBody err = response.errorBody();
-        if (err != null) {
-          throw new IOException(err.string());
-        }
-        //notify
-      } catch (Exception e) {
-        e.printStackTrace();
-        //notify
+      @Override
+      Call<Void> send(RestApiService service, String href, String key) {
+        return service.operate(href, key);
       }
     });
   }
 
   @Override
-  public void openDoors(DataCallback<DataService, DoorsAction> callback) {
+  public Cancellable openDoors(DataCallback<DataService, DoorsAction> callback) {
+    return submit(Priority.USER, callback, new DoorCommandRequestor<DoorsAction>("open", callback) {
 
-    executor.execute(new EntryPointRequestor<DataService, DoorsAction>(
-        DataServiceImpl.this, apiService, hostWrapper, callback) {
+      @Override
+      Call<DoorsAction> send(RestApiService service, String href, String key) {
+        return service.open(href, key);
+      }
+    });
+  }
 
+  @Override
+  public Cancellable closeDoors(DataCallback<DataService, DoorsAction> callback) {
+    return submit(Priority.USER, callback, new DoorCommandRequestor<DoorsAction>("close", callback) {
 
       @Override
-      Response<DoorsAction> onExecute(RestApiService service, HostWrapper hostWrapper, DoorsEntrypoint entrypoint) throws IOException {
-        logger.debug("Performing OPEN DOOR operation");
-        Response<DoorsAction> action = apiService.open(entrypoint.getLinkByRel("open").getHref()).execute();
-
-        return action;
+      Call<DoorsAction> send(RestApiService service, String href, String key) {
+        return service.close(href, key);
       }
     });
   }
 
   @Override
-  public void closeDoors(DataCallback<DataService, DoorsAction> callback) {
-    executor.execute(new EntryPointRequestor<DataService, DoorsAction>(
-        DataServiceImpl.this, apiService, hostWrapper, callback) {
+  public void flushOutbox() {
+    if (!flushing.compareAndSet(false, true)) {
+      return;
+    }
+    final FlushOutboxTask task = new FlushOutboxTask();
+    try {
+      task.setFuture(scheduler.submitAsync(Priority.USER, task));
+    }
+    catch (RejectedExecutionException e) {
+      logger.warn("Flushing outbox rejected: {}", e.getMessage());
+      flushing.set(false);
+      scheduleOutboxFlush();
+    }
+  }
 
-      @Override
-      Response<DoorsAction> onExecute(RestApiService service, HostWrapper hostWrapper, DoorsEntrypoint entrypoint) throws IOException {
-        logger.debug("Performing CLOSE DOOR operation");
-        Response<DoorsAction> action = apiService.close(entrypoint.getLinkByRel("close").getHref()).execute();
+  /**
+   * Outbox is flushed once the host is reachable again: after a successful response, or after
+   * a while as long as commands are pending.
+   */
+  private void onHostReachable() {
+    if (!outbox.isEmpty()) {
+      flushOutbox();
+    }
+  }
+
+  private synchronized void scheduleOutboxFlush() {
+    if (outboxFuture != null && !outboxFuture.isDone()) {
+      return;
+    }
+    try {
+      outboxFuture = executor.schedule(this::flushOutbox, OUTBOX_RETRY_DELAY, TimeUnit.MILLISECONDS);
+    }
+    catch (RejectedExecutionException e) {
+      logger.warn("Outbox flush not scheduled: {}", e.getMessage());
+    }
+  }
 
-        return action;
+  /**
+   * Sends door command with a new idempotency key. Open or close command which did not reach
+   * the server is put in the outbox and reported with {@link CommandQueuedException}.
+   */
+  private abstract class DoorCommandRequestor<T> extends EntryPointRequestor<DataService, T> {
+
+    private final String rel;
+    private final String key = CommandOutbox.newKey();
+    private final String host = hostWrapper.getHost();
+    private volatile boolean responded;
+
+    DoorCommandRequestor(String rel, DataCallback<DataService, T> callback) {
+      super(DataServiceImpl.this, executor, apiService, hostWrapper, resolver, callback);
+      this.rel = rel;
+    }
+
+    @Override
+    Call<T> createCall(RestApiService service, HostWrapper hostWrapper,
+                       DoorsEntrypoint entrypoint) throws IOException {
+      logger.debug("Performing '{}' command", rel);
+      return send(service, resolver.requireHref(entrypoint, rel), key);
+    }
+
+    @Override
+    void onResponse(Response<T> response) {
+      responded = true;
+      if (response.isSuccessful()) {
+        // commands queued before are superseded, replayed now they would undo this one
+        outbox.clear(host);
+        onDoorsCommandSent();
       }
-    });
+    }
+
+    @Override
+    Throwable onFailure(Throwable t) {
+      if (CommandOutbox.isReplayable(rel) && CommandOutbox.isUnsent(t) && !responded
+          && !isCanceled()) {
+        outbox.append(key, host, rel);
+        scheduleOutboxFlush();
+        return new CommandQueuedException(t);
+      }
+      return t;
+    }
+
+    abstract Call<T> send(RestApiService service, String href, String key);
+  }
+
+  /**
+   * Replays queued commands one by one, in order. Command is removed once server responds,
+   * whatever the response, flushing stops at the first command which fails to reach the
+   * server.
+   */
+  private class FlushOutboxTask extends CancellableTask {
+
+    private Iterator<CommandOutbox.Command> commands;
+    private boolean sent;
+
+    @Override
+    public void run() {
+      commands = outbox.pending().iterator();
+      next();
+    }
+
+    private void next() {
+      while (commands.hasNext()) {
+        final CommandOutbox.Command command = commands.next();
+        if (command.isExpired() || !command.getHost().equals(hostWrapper.getHost())) {
+          logger.debug("Dropping '{}' command queued for {}", command.getRel(), command.getHost());
+          outbox.remove(command);
+          continue;
+        }
+
+        resolver.resolve(new DataCallback<EntrypointResolver, DoorsEntrypoint>() {
+          @Override
+          public void onSuccess(EntrypointResolver resolver, DoorsEntrypoint entrypoint) {
+            try {
+              replay(command, commandCall(command, resolver.requireHref(entrypoint, command.getRel())));
+            }
+            catch (IOException e) {
+              outbox.remove(command);
+              next();
+            }
+          }
+
+          @Override
+          public void onFailure(EntrypointResolver resolver, Throwable t) {
+            finish(t);
+          }
+        });
+        return;
+      }
+      finish(null);
+    }
+
+    private <R> void replay(final CommandOutbox.Command command, Call<R> call) {
+      enqueue(call, new Callback<R>() {
+        @Override
+        public void onResponse(Call<R> call, Response<R> response) {
+          resolver.onResponse(response);
+          logger.debug("Replayed '{}' command: {}", command.getRel(), response.code());
+          outbox.remove(command);
+          sent |= response.isSuccessful();
+          next();
+        }
+
+        @Override
+        public void onFailure(Call<R> call, Throwable t) {
+          finish(t);
+        }
+      });
+    }
+
+    private Call<?> commandCall(CommandOutbox.Command command, String href) throws IOException {
+      switch (command.getRel()) {
+        case "open":
+          return apiService.open(href, command.getKey());
+        case "close":
+          return apiService.close(href, command.getKey());
+        default:
+          throw new IOException("Unknown command " + command.getRel());
+      }
+    }
+
+    private void finish(Throwable t) {
+      if (t != null) {
+        logger.warn("Flushing outbox stopped: {}", t.getMessage());
+      }
+      flushing.set(false);
+      if (sent) {
+        onDoorsCommandSent();
+      }
+      if (t != null && !outbox.isEmpty()) {
+        scheduleOutboxFlush();
+      }
+    }
   }
 
   @Override
-  public void resetStatistics(DataCallback<DataService, Void> callback) {
-    executor.execute(new EntryPointRequestor<DataService, Void>(
-        DataServiceImpl.this, apiService, hostWrapper, callback){
+  public Cancellable resetStatistics(DataCallback<DataService, Void> callback) {
+    return submit(Priority.USER, callback, new EntryPointRequestor<DataService, Void>(
+        DataServiceImpl.this, executor, apiService, hostWrapper, resolver, callback){
 
       @Override
-      Response<Void> onExecute(RestApiService service, HostWrapper hostWrapper, DoorsEntrypoint entrypoint) throws IOException {
-        Response<Void> logs = apiService.deleteStatistics(entrypoint.getLinkByRel("stats").getHref()).execute();
-        return logs;
+      Call<Void> createCall(RestApiService service, HostWrapper hostWrapper, DoorsEntrypoint entrypoint) throws IOException {
+        return apiService.deleteStatistics(resolver.requireHref(entrypoint, "stats"));
       }
     });
   }
 
-  private AtomicReference<DoorsEntrypoint> cacheEntryPointAndGet() throws IOException {
-    AtomicReference<DoorsEntrypoint> entrypoint = null;
-    synchronized (DataServiceImpl.this) {
-      entrypoint = getCachedEntryPoint();
+  private Cancellable submit(Priority priority, DataCallback<DataService, ?> callback, CancellableTask task) {
+    try {
+      task.setFuture(scheduler.submitAsync(priority, task));
+    }
+    catch (RejectedExecutionException e) {
+      logger.warn("Task rejected: {}", e.getMessage());
+      notifyFailure(this, callback, e);
+    }
+    return task;
+  }
 
-      if (entrypoint.get() == null) {
-        logger.debug("Entrypoint missing, requesting...");
-        entrypoint.set(getEntrypoint(apiService, hostWrapper));
+  private void schedulePollingTask(DataCallback<DataService, DoorsState> callback, long delay) {
+    synchronized (this) {
+      pollingFuture = executor.schedule(() -> submitPollingTask(callback), delay,
+          TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Background requests are bounded, so a tick may be rejected. It counts as failed poll and
+   * the next one is scheduled after backoff, otherwise polling would stop for good.
+   */
+  private void submitPollingTask(DataCallback<DataService, DoorsState> callback) {
+    final PollingTask task = new PollingTask(callback);
+    try {
+      task.setFuture(scheduler.submitAsync(Priority.BACKGROUND, task));
+    }
+    catch (RejectedExecutionException e) {
+      pollingScheduler.onFailure(null);
+      final long delay = pollingScheduler.nextDelay();
+      logger.warn("Polling task rejected, retrying in {}ms: {}", delay, e.getMessage());
+      synchronized (this) {
+        if (isCurrentPollingCallback(callback) && !streaming) {
+          schedulePollingTask(callback, delay);
+        }
       }
     }
+  }
+
+  private synchronized void cancelPollingTask() {
+    if (pollingFuture != null) {
+      pollingFuture.cancel(false);
+      pollingFuture = null;
+    }
+  }
 
-    if (entrypoint.get() == null) {
-      throw new IllegalStateException("Entrypoint is null!");
+  private synchronized void scheduleChannelTask(DataCallback<DataService, DoorsState> callback, long delay) {
+    channelFuture = executor.schedule(() -> submitChannelTask(callback), delay,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Rejected attempt to open the channel is handled like unavailable channel: state is polled
+   * and opening is retried later.
+   */
+  private void submitChannelTask(DataCallback<DataService, DoorsState> callback) {
+    final OpenChannelTask task = new OpenChannelTask(callback);
+    try {
+      task.setFuture(scheduler.submitAsync(Priority.BACKGROUND, task));
+    }
+    catch (RejectedExecutionException e) {
+      logger.warn("Channel task rejected: {}", e.getMessage());
+      onChannelUnavailable(callback);
     }
-    return entrypoint;
   }
 
-  private void schedulePollingTask(DataCallback<DataService, DoorsState> callback) {
-    executor.schedule(new PollingTask(callback), 2, TimeUnit.SECONDS);
+  private synchronized void cancelChannelTask() {
+    if (channelFuture != null) {
+      channelFuture.cancel(false);
+      channelFuture = null;
+    }
   }
 
   /**
-   * Performs a set of http request synchronously to get {@link DoorsEntrypoint}.
-   * This method should be called from worker thread.
-   * @throws IOException if a problem occurs while interacting with the server
+   * Starts polling when state channel is not available. Does nothing if polling task is
+   * already scheduled.
    */
-  private static DoorsEntrypoint getEntrypoint(RestApiService service, HostWrapper hostWrapper) throws IOException {
-    Response<Api> api = service.api(hostWrapper.getHost()).execute();
+  private synchronized void startPollingFallback(DataCallback<DataService, DoorsState> callback) {
+    if (pollingEnabled && pollingCallback == callback && pollingFuture == null) {
+      logger.debug("State channel unavailable, falling back to polling");
+      schedulePollingTask(callback, 0);
+    }
+  }
 
-    String doorsUrl = api.body().getLinkByRel("doors").getHref();
-    Response<DoorsEntrypoint> endpoints = service.entrypoint(doorsUrl).execute();
-    return endpoints.body();
+  private synchronized boolean isCurrentPollingCallback(DataCallback<DataService, DoorsState> callback) {
+    return pollingEnabled && pollingCallback == callback;
+  }
+
+  /**
+   * Doors are expected to move after a command, so polling falls back to the fast interval
+   * and the pending (possibly backed off) tick is replaced with an immediate one.
+   */
+  private void onDoorsCommandSent() {
+    pollingScheduler.reset();
+    synchronized (this) {
+      if (pollingEnabled && pollingFuture != null && pollingFuture.cancel(false)) {
+        schedulePollingTask(pollingCallback, 0);
+      }
+    }
   }
 
   private static <S, T> void notifyFailure(S service, DataCallback<S, T> callback, Throwable t) {
@@ -303,65 +820,450 @@ public class DataServiceImpl implements DataService {
 
   /**
    * Base task that provides {@link DoorsEntrypoint} and lets implementer to perform rest request
-   * with proper resource.
+   * with proper resource. Resolution and the request are chained asynchronously, no thread
+   * waits for the server.
    * @param <S> data service
    * @param <T> expected response type
    */
-  static abstract class EntryPointRequestor<S extends DataService, T> implements Runnable {
+  static abstract class EntryPointRequestor<S extends DataService, T> extends CancellableTask {
+
+    static final int MAX_RETRIES = 2;
+    static final long RETRY_DELAY = 500;
+    /**
+     * Budget of the whole operation: entrypoint discovery, the request and its retries.
+     */
+    static final long DEADLINE = TimeUnit.SECONDS.toMillis(20);
 
     private final Logger logger = LoggerFactory.getLogger(getClass().getSimpleName());
     private final S service;
+    private final ScheduledExecutorService executor;
     private final RestApiService restService;
     private final HostWrapper hostWrapper;
+    private final EntrypointResolver resolver;
+    private final RequestCoalescer<S> coalescer;
     private final DataCallback<S, T> callback;
-
-    EntryPointRequestor(S service, RestApiService restService, HostWrapper hostWrapper,
+    private final Member member = new Member();
+    private volatile String joinedKey;
+    private volatile boolean following;
+    private volatile int attempt;
+    private volatile boolean reresolved;
+    private volatile Deadline deadline;
+    private volatile ScheduledFuture<?> expiry;
+    private volatile Runnable done;
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+
+    EntryPointRequestor(S service, ScheduledExecutorService executor, RestApiService restService,
+                        HostWrapper hostWrapper, EntrypointResolver resolver,
                         DataCallback<S, T> callback) {
+      this(service, executor, restService, hostWrapper, resolver, null, callback);
+    }
+
+    /**
+     * @param coalescer if provided, request shares result with identical requests in flight,
+     *                  see {@link #coalescingKey(DoorsEntrypoint)}
+     */
+    EntryPointRequestor(S service, ScheduledExecutorService executor, RestApiService restService,
+                        HostWrapper hostWrapper, EntrypointResolver resolver,
+                        RequestCoalescer<S> coalescer, DataCallback<S, T> callback) {
       this.service = service;
+      this.executor = executor;
       this.restService = restService;
       this.hostWrapper = hostWrapper;
+      this.resolver = resolver;
+      this.coalescer = coalescer;
       this.callback = callback;
     }
 
+    /**
+     * Holds the scheduler slot until the operation completes, including retries and waiting
+     * for a shared request.
+     */
+    @Override
+    public void run(Runnable done) {
+      this.done = done;
+      run();
+    }
+
     @Override
     public void run() {
       try {
-
         Condition.check(callback != null, "Callback cannot be NULL");
+      }
+      catch (Exception e) {
+        fail(null, e);
+        return;
+      }
 
-        AtomicReference<DoorsEntrypoint> entrypoint = null;
-        synchronized (service) {
-          entrypoint = service.getCachedEntryPoint();
+      if (isCanceled()) {
+        finish();
+        complete();
+        return;
+      }
+      deadline = Deadline.after(budget());
+      try {
+        expiry = executor.schedule(this::expire, deadline.getBudget(), TimeUnit.MILLISECONDS);
+      }
+      catch (RejectedExecutionException e) {
+        logger.warn("Deadline not enforced: {}", e.getMessage());
+      }
+      onStart();
+      resolver.resolve(new DataCallback<EntrypointResolver, DoorsEntrypoint>() {
+        @Override
+        public void onSuccess(EntrypointResolver resolver, DoorsEntrypoint entrypoint) {
+          request(entrypoint);
+        }
 
-          if (entrypoint.get() == null) {
-            logger.debug("Entrypoint missing, requesting...");
-            entrypoint.set(getEntrypoint(restService, hostWrapper));
+        @Override
+        public void onFailure(EntrypointResolver resolver, Throwable t) {
+          fail(null, t);
+        }
+      });
+    }
+
+    private void request(DoorsEntrypoint entrypoint) {
+      String key = null;
+      final Call<T> call;
+      try {
+        key = coalescer != null ? coalescingKey(entrypoint) : null;
+        if (key != null) {
+          joinedKey = key;
+          final RequestCoalescer.Role role = coalescer.join(key, member, deadline);
+          if (role == RequestCoalescer.Role.ALONE) {
+            logger.debug("Request in flight expires too early, not attached: {}", key);
+            joinedKey = null;
+            key = null;
+          }
+          else if (role == RequestCoalescer.Role.FOLLOWER) {
+            // result is delivered by member, own deadline stays armed
+            logger.debug("Attached to request in flight: {}", key);
+            following = true;
+            if (isCanceled()) {
+              // canceled while joining
+              coalescer.leave(key, member);
+              fail(null, new InterruptedIOException("Canceled"));
+            }
+            return;
+          }
+          else if (isCanceled()) {
+            // canceled while joining
+            coalescer.leave(key, member);
           }
         }
+        call = createCall(restService, hostWrapper, entrypoint);
+      }
+      catch (Exception e) {
+        fail(key, e);
+        return;
+      }
+
+      send(key, call);
+    }
 
-        if (entrypoint.get() == null) {
-          throw new IllegalStateException("Entrypoint is null!");
+    /**
+     * Resolves entrypoint again after its link turned out to be gone, and repeats the request.
+     */
+    private void resend(final String key) {
+      resolver.resolve(new DataCallback<EntrypointResolver, DoorsEntrypoint>() {
+        @Override
+        public void onSuccess(EntrypointResolver resolver, DoorsEntrypoint entrypoint) {
+          try {
+            send(key, createCall(restService, hostWrapper, entrypoint));
+          }
+          catch (Exception e) {
+            fail(key, e);
+          }
         }
 
-        Response<T> response = onExecute(restService, hostWrapper, entrypoint.get());
+        @Override
+        public void onFailure(EntrypointResolver resolver, Throwable t) {
+          fail(key, t);
+        }
+      });
+    }
 
-        final ResponseBody error = response.errorBody();
-        if (error != null) {
-          throw new IOException(error.string());
+    private void send(final String sharedKey, final Call<T> call) {
+      enqueue(call, new Callback<T>() {
+        @Override
+        public void onResponse(Call<T> call, Response<T> response) {
+          if (finished.get()) {
+            // deadline exceeded in the meantime
+            closeQuietly(response.errorBody());
+            return;
+          }
+          try {
+            resolver.onResponse(response);
+            if ((response.code() == 404 || response.code() == 410) && !reresolved) {
+              // cached entrypoint has just been invalidated
+              reresolved = true;
+              logger.debug("Link {} is gone, resolving entrypoint again", call.request().url());
+              closeQuietly(response.errorBody());
+              resend(sharedKey);
+              return;
+            }
+            if (shouldRetry(call, response.code(), null)) {
+              closeQuietly(response.errorBody());
+              retry(sharedKey, call);
+              return;
+            }
+            EntryPointRequestor.this.onResponse(response);
+
+            final ResponseBody error = response.errorBody();
+            if (error != null) {
+              throw new IOException(error.string());
+            }
+          }
+          catch (Exception e) {
+            fail(sharedKey, e);
+            return;
+          }
+          succeed(sharedKey, onResult(response.body()));
         }
 
-        callback.onSuccess(service, response.body());
+        @Override
+        public void onFailure(Call<T> call, Throwable t) {
+          if (shouldRetry(call, 0, t)) {
+            retry(sharedKey, call);
+            return;
+          }
+          fail(sharedKey, t);
+        }
+      });
+    }
+
+    /**
+     * Requests are retried after I/O errors and responses of overloaded or restarting server,
+     * but only if repeating them is safe: GETs and commands with idempotency key.
+     */
+    private boolean shouldRetry(Call<T> call, int code, Throwable t) {
+      if (attempt >= maxRetries() || isCanceled()
+          || deadline.remaining() <= RETRY_DELAY << attempt) {
+        return false;
       }
-      catch (Exception e) {
-        logger.error("Executing task failed!", e);
-        notifyFailure(service, callback, e);
+      if (t != null ? !(t instanceof IOException) || t instanceof CircuitOpenException
+          : code != 502 && code != 503 && code != 504) {
+        return false;
       }
+      final Request request = call.request();
+      return "GET".equals(request.method()) || request.header("Idempotency-Key") != null;
     }
 
-    abstract Response<T> onExecute(RestApiService service, HostWrapper hostWrapper, DoorsEntrypoint entrypoint) throws IOException;
+    /**
+     * Repeats the call after exponential backoff with jitter.
+     */
+    private void retry(final String key, final Call<T> call) {
+      final long backoff = RETRY_DELAY << attempt;
+      final long delay = backoff + (long) (Math.random() * backoff / 2);
+      attempt++;
+      logger.debug("Retrying {} in {}ms, attempt {}", call.request().url(), delay, attempt);
+      try {
+        executor.schedule(() -> send(key, call.clone()), delay, TimeUnit.MILLISECONDS);
+      }
+      catch (RejectedExecutionException e) {
+        fail(key, e);
+      }
+    }
+
+    private static void closeQuietly(ResponseBody body) {
+      if (body != null) {
+        body.close();
+      }
+    }
+
+    /**
+     * Fails the operation once its budget is spent, whatever it is waiting for. Shared
+     * discovery goes on, only the call of this task is aborted.
+     */
+    private void expire() {
+      logger.debug("Deadline exceeded: {}", deadline);
+      if (following) {
+        // request in flight goes on for others
+        coalescer.leave(joinedKey, member);
+        fail(null, new DeadlineExceededException(deadline));
+        return;
+      }
+      fail(joinedKey, new DeadlineExceededException(deadline));
+      abort();
+    }
+
+    /**
+     * @return false if the task has already finished
+     */
+    private boolean finish() {
+      if (!finished.compareAndSet(false, true)) {
+        return false;
+      }
+      final ScheduledFuture<?> expiry = this.expiry;
+      if (expiry != null) {
+        expiry.cancel(false);
+      }
+      return true;
+    }
+
+    private void succeed(String key, T result) {
+      if (!finish()) {
+        return;
+      }
+      try {
+        if (key != null) {
+          coalescer.complete(key, service, result);
+        }
+        else if (!isCanceled()) {
+          callback.onSuccess(service, result);
+        }
+      }
+      finally {
+        complete();
+      }
+    }
+
+    private void fail(String key, Throwable t) {
+      if (!finish()) {
+        return;
+      }
+      try {
+        if (isCanceled()) {
+          logger.debug("Task canceled: {}", t.getMessage());
+        }
+        else {
+          logger.error("Executing task failed!", t);
+        }
+        final Throwable reported = onFailure(t);
+        if (key != null) {
+          coalescer.fail(key, service, reported);
+        }
+        else if (!isCanceled()) {
+          notifyFailure(service, callback, reported);
+        }
+      }
+      finally {
+        complete();
+      }
+    }
+
+    private void complete() {
+      try {
+        onComplete();
+      }
+      finally {
+        final Runnable done = this.done;
+        if (done != null) {
+          done.run();
+        }
+      }
+    }
+
+    /**
+     * Shared request is aborted only when nobody else waits for its result.
+     */
+    @Override
+    boolean onCancel() {
+      final String key = joinedKey;
+      if (key == null) {
+        return true;
+      }
+      final boolean abort = coalescer.leave(key, member);
+      if (following) {
+        fail(null, new InterruptedIOException("Canceled"));
+        return false;
+      }
+      return abort;
+    }
+
+    /**
+     * Delivers result of the shared request. Leader passes it to the callback as is, follower
+     * completes with it, unless its own deadline has been exceeded before.
+     */
+    private final class Member implements DataCallback<S, T> {
+
+      @Override
+      public void onSuccess(S service, T result) {
+        if (following) {
+          succeed(null, result);
+        }
+        else {
+          callback.onSuccess(service, result);
+        }
+      }
+
+      @Override
+      public void onFailure(S service, Throwable t) {
+        if (!following) {
+          callback.onFailure(service, t);
+          return;
+        }
+        if (!finish()) {
+          return;
+        }
+        try {
+          if (!isCanceled()) {
+            notifyFailure(service, callback, t);
+          }
+        }
+        finally {
+          complete();
+        }
+      }
+    }
+
+    /**
+     * Called on the worker thread before the entrypoint is resolved.
+     */
+    void onStart() {}
+
+    /**
+     * Called with every response, before it is checked for errors.
+     */
+    void onResponse(Response<T> response) {}
+
+    /**
+     * @return result delivered to the callback (and to the requests attached to this one)
+     */
+    T onResult(T result) {
+      return result;
+    }
+
+    /**
+     * @return failure reported to the callback
+     */
+    Throwable onFailure(Throwable t) {
+      return t;
+    }
+
+    /**
+     * Called exactly once when task is done, whatever the outcome.
+     */
+    void onComplete() {}
+
+    /**
+     * @return time in milliseconds the whole operation may take
+     */
+    long budget() {
+      return DEADLINE;
+    }
+
+    /**
+     * @return how many times failed request may be repeated
+     */
+    int maxRetries() {
+      return MAX_RETRIES;
+    }
+
+    /**
+     * @return key identifying requested resource (method, resolved href and query), or null
+     * if request must not be shared
+     */
+    String coalescingKey(DoorsEntrypoint entrypoint) throws IOException {
+      return null;
+    }
+
+    abstract Call<T> createCall(RestApiService service, HostWrapper hostWrapper, DoorsEntrypoint entrypoint) throws IOException;
   }
 
-  private class PollingTask implements Runnable {
+  /**
+   * Performs single state request and schedules the next one when it completes, so there is
+   * never more than one poll in flight. Ticks fired while poll is still running are dropped.
+   */
+  private class PollingTask extends CancellableTask {
 
     private final DataCallback<DataService, DoorsState> callback;
 
@@ -371,18 +1273,222 @@ public class DataServiceImpl implements DataService {
 
     @Override
     public void run() {
-      logger.debug("Executing polling task: {}", this);
+      run(() -> {});
+    }
 
-      boolean polling;
-      requestState(callback);
+    /**
+     * Poll holds the background slot until its request completes.
+     */
+    @Override
+    public void run(Runnable done) {
       synchronized (DataServiceImpl.this) {
-        polling = pollingEnabled;
+        if (!pollingEnabled) {
+          done.run();
+          return;
+        }
+      }
+      if (!pollInFlight.compareAndSet(false, true)) {
+        logger.debug("Previous poll still in flight, skipping tick: {}", this);
+        tickSkipped.set(true);
+        done.run();
+        return;
       }
 
-      if (polling) {
-        schedulePollingTask(callback);
+      logger.debug("Executing polling task: {}", this);
+      final StateRequestor request = new StateRequestor(callback, pollingScheduler.pollDeadline(), true) {
+        /**
+         * Failed poll is not repeated, {@link PollingScheduler} backs off instead.
+         */
+        @Override
+        int maxRetries() {
+          return 0;
+        }
+
+        @Override
+        void onComplete() {
+          pollRequest.compareAndSet(this, null);
+          pollInFlight.set(false);
+          onPollFinished();
+        }
+      };
+      pollRequest.set(request);
+      request.run(done);
+    }
+
+    private void onPollFinished() {
+      synchronized (DataServiceImpl.this) {
+        // skipped tick might belong to polling restarted with a new callback
+        final boolean skipped = tickSkipped.getAndSet(false);
+        if (pollingEnabled && (pollingCallback == callback || skipped) && !streaming) {
+          schedulePollingTask(pollingCallback, pollingScheduler.nextDelay());
+        }
       }
       logger.debug("Polling task finished: {}", this);
     }
   }
+
+  /**
+   * Opens {@link DoorsStateChannel} if server exposes state stream, otherwise falls back
+   * to polling.
+   */
+  private class OpenChannelTask extends CancellableTask {
+
+    private final DataCallback<DataService, DoorsState> callback;
+
+    OpenChannelTask(DataCallback<DataService, DoorsState> callback) {
+      this.callback = callback;
+    }
+
+    @Override
+    public void run() {
+      if (!isCurrentPollingCallback(callback)) {
+        return;
+      }
+
+      resolver.resolve(new DataCallback<EntrypointResolver, DoorsEntrypoint>() {
+        @Override
+        public void onSuccess(EntrypointResolver resolver, DoorsEntrypoint entrypoint) {
+          try {
+            open(entrypoint);
+          }
+          catch (Exception e) {
+            onFailure(resolver, e);
+          }
+        }
+
+        @Override
+        public void onFailure(EntrypointResolver resolver, Throwable t) {
+          logger.warn("Opening state channel failed!", t);
+          onChannelUnavailable(callback);
+        }
+      });
+    }
+
+    private void open(DoorsEntrypoint entrypoint) {
+      Link link = entrypoint.getLinkByRel(STATE_STREAM_REL);
+      if (link == null) {
+        logger.debug("State stream is not supported by server");
+        startPollingFallback(callback);
+        return;
+      }
+
+      // channel delivers changes only, current state is requested once
+      pollRequest.set(requestState(callback));
+      synchronized (DataServiceImpl.this) {
+        if (isCurrentPollingCallback(callback)) {
+          stateChannel.open(link.getHref(), new ChannelListener(callback));
+        }
+      }
+    }
+  }
+
+  private void onChannelUnavailable(DataCallback<DataService, DoorsState> callback) {
+    synchronized (this) {
+      if (isCurrentPollingCallback(callback)) {
+        streaming = false;
+        startPollingFallback(callback);
+        scheduleChannelTask(callback, CHANNEL_RETRY_DELAY);
+      }
+    }
+  }
+
+  /**
+   * Stops polling, unless it has been restarted with another callback in the meantime.
+   */
+  /**
+   * Receivers of state updates driven by a single polling or channel task: the state stream
+   * and callbacks of {@link #startPollingDoorState}. Each start of polling gets a new instance,
+   * tasks of the previous one recognize they are stale by it.
+   */
+  private static final class StateFanout implements DataCallback<DataService, DoorsState> {
+
+    private final List<DataCallback<DataService, DoorsState>> receivers = new CopyOnWriteArrayList<>();
+
+    void add(DataCallback<DataService, DoorsState> receiver) {
+      receivers.add(receiver);
+    }
+
+    void remove(DataCallback<DataService, DoorsState> receiver) {
+      receivers.remove(receiver);
+    }
+
+    void retain(DataCallback<DataService, DoorsState> receiver) {
+      receivers.retainAll(Collections.singleton(receiver));
+    }
+
+    boolean isEmpty() {
+      return receivers.isEmpty();
+    }
+
+    @Override
+    public void onSuccess(DataService service, DoorsState state) {
+      for (DataCallback<DataService, DoorsState> receiver : receivers) {
+        receiver.onSuccess(service, state);
+      }
+    }
+
+    @Override
+    public void onFailure(DataService service, Throwable t) {
+      for (DataCallback<DataService, DoorsState> receiver : receivers) {
+        receiver.onFailure(service, t);
+      }
+    }
+  }
+
+  private class PollingHandle implements Cancellable {
+
+    private final DataCallback<DataService, DoorsState> callback;
+    private volatile boolean canceled;
+
+    PollingHandle(DataCallback<DataService, DoorsState> callback) {
+      this.callback = callback;
+    }
+
+    @Override
+    public void cancel() {
+      canceled = true;
+      stopPolling(callback);
+    }
+
+    @Override
+    public boolean isCanceled() {
+      return canceled;
+    }
+  }
+
+  private class ChannelListener implements DoorsStateChannel.Listener {
+
+    private final DataCallback<DataService, DoorsState> callback;
+
+    ChannelListener(DataCallback<DataService, DoorsState> callback) {
+      this.callback = callback;
+    }
+
+    @Override
+    public void onStateChanged(DoorsState state) {
+      synchronized (DataServiceImpl.this) {
+        if (!isCurrentPollingCallback(callback)) {
+          return;
+        }
+        if (!streaming) {
+          logger.debug("State channel is up, polling no longer needed");
+          streaming = true;
+          cancelPollingTask();
+        }
+      }
+      if (state == null || state.getState() == null) {
+        return;
+      }
+      if (!stateStore.offer(state, System.currentTimeMillis())) {
+        logger.debug("Pushed state {} is stale, dropped", state.getState());
+        return;
+      }
+      callback.onSuccess(DataServiceImpl.this, state);
+    }
+
+    @Override
+    public void onUnavailable(Throwable t) {
+      onChannelUnavailable(callback);
+    }
+  }
 }
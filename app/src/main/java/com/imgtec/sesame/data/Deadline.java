@@ -0,0 +1,85 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time by which an operation has to complete, shared by all requests it makes.
+ */
+public final class Deadline {
+
+  private final long budget;
+  private final long expiresAt;
+
+  /**
+   * @param millis budget of the operation, counted from now
+   */
+  public static Deadline after(long millis) {
+    return new Deadline(millis);
+  }
+
+  private Deadline(long budget) {
+    this.budget = budget;
+    this.expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget);
+  }
+
+  /**
+   * @return whole budget in milliseconds
+   */
+  public long getBudget() {
+    return budget;
+  }
+
+  /**
+   * @return milliseconds left, 0 once expired
+   */
+  public long remaining() {
+    return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAt - System.nanoTime()));
+  }
+
+  public boolean isExpired() {
+    return remaining() == 0;
+  }
+
+  /**
+   * @return true if this deadline comes later than the other one
+   */
+  public boolean isAfter(Deadline other) {
+    return expiresAt - other.expiresAt > 0;
+  }
+
+  @Override
+  public String toString() {
+    return "Deadline{budget=" + budget + "ms, remaining=" + remaining() + "ms}";
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.imgtec.sesame.data.api.pojo.DoorsState;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+
+/**
+ * Holds single WebSocket connection to the controller and delivers every {@link DoorsState}
+ * pushed by the server. Each message is expected to be a JSON encoded {@link DoorsState}.
+ */
+public class DoorsStateChannel {
+
+  public interface Listener {
+
+    void onStateChanged(DoorsState state);
+
+    /**
+     * Called when connection could not be established or was lost. Channel is closed
+     * at this point and has to be reopened.
+     */
+    void onUnavailable(Throwable t);
+  }
+
+  static final int NORMAL_CLOSURE = 1000;
+  static final long PING_INTERVAL = 30;
+
+  private final Logger logger = LoggerFactory.getLogger(getClass().getSimpleName());
+  private final OkHttpClient client;
+  private final Gson gson;
+  private WebSocket webSocket;
+
+  public DoorsStateChannel(OkHttpClient client, Gson gson) {
+    super();
+    this.client = client.newBuilder()
+        .readTimeout(0, TimeUnit.SECONDS)
+        .pingInterval(PING_INTERVAL, TimeUnit.SECONDS)
+        .build();
+    this.gson = gson;
+  }
+
+  public synchronized void open(String url, Listener listener) {
+    close();
+    logger.debug("Opening state channel: {}", url);
+    Request request = new Request.Builder().url(url).build();
+    webSocket = client.newWebSocket(request, new ChannelListener(listener));
+  }
+
+  public synchronized void close() {
+    if (webSocket != null) {
+      webSocket.close(NORMAL_CLOSURE, null);
+      webSocket = null;
+    }
+  }
+
+  public synchronized boolean isOpen() {
+    return webSocket != null;
+  }
+
+  private synchronized boolean isCurrent(WebSocket socket) {
+    return webSocket == socket;
+  }
+
+  private synchronized boolean release(WebSocket socket) {
+    if (webSocket == socket) {
+      webSocket = null;
+      return true;
+    }
+    return false;
+  }
+
+  private class ChannelListener extends WebSocketListener {
+
+    private final Listener listener;
+
+    ChannelListener(Listener listener) {
+      this.listener = listener;
+    }
+
+    @Override
+    public void onMessage(WebSocket webSocket, String text) {
+      if (!isCurrent(webSocket)) {
+        return;
+      }
+      try {
+        DoorsState state = gson.fromJson(text, DoorsState.class);
+        if (state != null && state.getState() != null) {
+          listener.onStateChanged(state);
+        }
+      }
+      catch (JsonParseException e) {
+        logger.warn("Ignoring malformed state message: {}", text);
+      }
+    }
+
+    @Override
+    public void onClosing(WebSocket webSocket, int code, String reason) {
+      webSocket.close(NORMAL_CLOSURE, null);
+      if (release(webSocket)) {
+        listener.onUnavailable(new IOException("State channel closed by server: " + code));
+      }
+    }
+
+    @Override
+    public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+      if (release(webSocket)) {
+        logger.warn("State channel failed: {}", t.getMessage());
+        listener.onUnavailable(t);
+      }
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data;
+
+import com.imgtec.sesame.data.api.DoorsHelper;
+import com.imgtec.sesame.data.api.pojo.DoorsState;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Last known state of the doors, published as immutable {@link Snapshot}. Readers never
+ * block. Observations are ordered by the time they were made (request sent, message
+ * received), an older observation arriving late is rejected, so a slow poll can't overwrite
+ * state pushed in the meantime. Besides the latest state, snapshot keeps the last settled
+ * (opened or closed) one.
+ */
+public class DoorsStateStore {
+
+  private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(null);
+
+  /**
+   * @return latest snapshot, null if no state has been observed yet
+   */
+  public Snapshot get() {
+    return snapshot.get();
+  }
+
+  /**
+   * @param observedAt time in milliseconds the state was observed at
+   * @return true if state was stored, false if a newer one is already known
+   */
+  public boolean offer(DoorsState state, long observedAt) {
+    while (true) {
+      final Snapshot current = snapshot.get();
+      if (current != null && observedAt < current.observedAt) {
+        return false;
+      }
+      final long version = current != null ? current.version + 1 : 1;
+      final String settled = isSettled(state) ? state.getState()
+          : current != null ? current.settled : null;
+      final Snapshot next = new Snapshot(state.getState(), settled, version, observedAt);
+      if (snapshot.compareAndSet(current, next)) {
+        return true;
+      }
+    }
+  }
+
+  private static boolean isSettled(DoorsState state) {
+    return state.getState() != null
+        && (DoorsHelper.isDoorOpened(state) || DoorsHelper.isDoorClosed(state));
+  }
+
+  private static DoorsState copy(String state) {
+    final DoorsState copy = new DoorsState();
+    copy.setState(state);
+    return copy;
+  }
+
+  /**
+   * Immutable door state, version grows with every stored observation.
+   */
+  public static final class Snapshot {
+
+    private final String state;
+    private final String settled;
+    private final long version;
+    private final long observedAt;
+
+    Snapshot(String state, String settled, long version, long observedAt) {
+      this.state = state;
+      this.settled = settled;
+      this.version = version;
+      this.observedAt = observedAt;
+    }
+
+    /**
+     * @return copy of the latest state
+     */
+    public DoorsState getState() {
+      return copy(state);
+    }
+
+    /**
+     * @return copy of the last opened or closed state, null if there was none
+     */
+    public DoorsState getSettledState() {
+      return settled != null ? copy(settled) : null;
+    }
+
+    public long getVersion() {
+      return version;
+    }
+
+    public long getObservedAt() {
+      return observedAt;
+    }
+
+    @Override
+    public String toString() {
+      return "Snapshot{state=" + state + ", settled=" + settled + ", version=" + version
+          + ", observedAt=" + observedAt + "}";
+    }
+  }
+}
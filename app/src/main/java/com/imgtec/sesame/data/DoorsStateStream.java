@@ -0,0 +1,215 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data;
+
+import com.imgtec.sesame.data.api.pojo.DoorsState;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Shares one upstream of door state (state channel or polling) among any number of
+ * subscribers. Upstream runs only while there is at least one subscriber, the latest state is
+ * replayed to new subscribers. Subscribers are notified on the executor and each keeps only
+ * its latest pending notification, so a slow subscriber skips intermediate states instead of
+ * holding up the upstream. Notification rejected by the executor stays pending and is retried
+ * on the timer.
+ */
+class DoorsStateStream implements DataCallback<DataService, DoorsState> {
+
+  interface Upstream {
+
+    void start(DataCallback<DataService, DoorsState> sink);
+
+    void stop(DataCallback<DataService, DoorsState> sink);
+  }
+
+  static final long DELIVERY_RETRY_DELAY = 100;
+
+  private final DataService service;
+  private final Upstream upstream;
+  private final Executor executor;
+  private final ScheduledExecutorService timer;
+  private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+  private final AtomicReference<DoorsState> latest = new AtomicReference<>(null);
+
+  /**
+   * @param executor delivers notifications
+   * @param timer retries notifications rejected by the executor, its tasks must not block
+   */
+  DoorsStateStream(DataService service, Upstream upstream, Executor executor,
+                   ScheduledExecutorService timer) {
+    super();
+    this.service = service;
+    this.upstream = upstream;
+    this.executor = executor;
+    this.timer = timer;
+  }
+
+  /**
+   * @return handle which unsubscribes, upstream stops when the last subscriber leaves
+   */
+  Cancellable subscribe(DataCallback<DataService, DoorsState> subscriber) {
+    final Subscription subscription = new Subscription(subscriber);
+    synchronized (this) {
+      subscriptions.add(subscription);
+      if (subscriptions.size() == 1) {
+        upstream.start(this);
+        return subscription;
+      }
+    }
+    final DoorsState state = latest.get();
+    if (state != null) {
+      subscription.offer(state);
+    }
+    return subscription;
+  }
+
+  int getSubscriberCount() {
+    return subscriptions.size();
+  }
+
+  @Override
+  public void onSuccess(DataService service, DoorsState state) {
+    latest.set(state);
+    for (Subscription subscription : subscriptions) {
+      subscription.offer(state);
+    }
+  }
+
+  @Override
+  public void onFailure(DataService service, Throwable t) {
+    for (Subscription subscription : subscriptions) {
+      subscription.offer(t);
+    }
+  }
+
+  private synchronized void unsubscribe(Subscription subscription) {
+    if (subscriptions.remove(subscription) && subscriptions.isEmpty()) {
+      upstream.stop(this);
+      // nothing keeps it up to date anymore
+      latest.set(null);
+    }
+  }
+
+  /**
+   * Delivers notifications to a single subscriber, one at a time. Pending notification is
+   * replaced by a newer one.
+   */
+  private class Subscription implements Cancellable, Runnable {
+
+    private final DataCallback<DataService, DoorsState> subscriber;
+    private final AtomicReference<Object> pending = new AtomicReference<>(null);
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private volatile boolean canceled;
+
+    Subscription(DataCallback<DataService, DoorsState> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    /**
+     * @param event state or failure
+     */
+    void offer(Object event) {
+      if (canceled) {
+        return;
+      }
+      pending.set(event);
+      if (scheduled.compareAndSet(false, true)) {
+        submit();
+      }
+    }
+
+    /**
+     * Called by the holder of the scheduled flag. While delivery waits for retry, newer
+     * notifications only replace the pending one.
+     */
+    private void submit() {
+      if (canceled) {
+        scheduled.set(false);
+        return;
+      }
+      try {
+        executor.execute(this);
+      }
+      catch (RejectedExecutionException e) {
+        try {
+          timer.schedule(this::submit, DELIVERY_RETRY_DELAY, TimeUnit.MILLISECONDS);
+        }
+        catch (RejectedExecutionException stopped) {
+          scheduled.set(false);
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        final Object event = pending.getAndSet(null);
+        if (event != null && !canceled) {
+          deliver(event);
+        }
+        scheduled.set(false);
+        // offered while delivering, unless another run has already taken over
+        if (pending.get() == null || !scheduled.compareAndSet(false, true)) {
+          return;
+        }
+      }
+    }
+
+    private void deliver(Object event) {
+      if (event instanceof Throwable) {
+        subscriber.onFailure(service, (Throwable) event);
+      }
+      else {
+        subscriber.onSuccess(service, (DoorsState) event);
+      }
+    }
+
+    @Override
+    public void cancel() {
+      canceled = true;
+      unsubscribe(this);
+    }
+
+    @Override
+    public boolean isCanceled() {
+      return canceled;
+    }
+  }
+}
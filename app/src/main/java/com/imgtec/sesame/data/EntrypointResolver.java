@@ -0,0 +1,358 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data;
+
+import com.imgtec.sesame.data.api.HostWrapper;
+import com.imgtec.sesame.data.api.RestApiService;
+import com.imgtec.sesame.data.api.pojo.Api;
+import com.imgtec.sesame.data.api.pojo.DoorsEntrypoint;
+import com.imgtec.sesame.data.api.pojo.Link;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.CacheControl;
+import okhttp3.HttpUrl;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Resolves {@link DoorsEntrypoint} ('api' -> 'doors') and caches it. At most one discovery
+ * runs at a time, concurrent callers are attached to it and notified with its result.
+ * Discovery is performed with asynchronous calls, so no thread is blocked while waiting
+ * for the server. Cached entrypoint is read lock-free. Failed discovery is not cached,
+ * next call starts over.
+ * <p>
+ * Resolved links are also persisted in {@link LinksCache}, so after cold start entrypoint is
+ * available immediately and revalidated in background.
+ */
+public class EntrypointResolver {
+
+  private final Logger logger = LoggerFactory.getLogger(getClass().getSimpleName());
+  private final RestApiService service;
+  private final HostWrapper hostWrapper;
+  private final LinksCache linksCache;
+  private final AtomicReference<DoorsEntrypoint> entrypoint = new AtomicReference<>(null);
+  private final AtomicReference<Discovery> discovery = new AtomicReference<>(null);
+  private final AtomicInteger generation = new AtomicInteger();
+  private final AtomicInteger persistedGeneration = new AtomicInteger(-1);
+
+  public EntrypointResolver(RestApiService service, HostWrapper hostWrapper,
+                            LinksCache linksCache) {
+    super();
+    this.service = service;
+    this.hostWrapper = hostWrapper;
+    this.linksCache = linksCache;
+  }
+
+  /**
+   * @return reference holding cached entrypoint, null value means entrypoint is not resolved
+   */
+  public AtomicReference<DoorsEntrypoint> getCached() {
+    return entrypoint;
+  }
+
+  /**
+   * Provides cached entrypoint or starts discovery. Callback is invoked on the calling
+   * thread if entrypoint is available, otherwise on the thread which completed discovery.
+   */
+  public void resolve(DataCallback<EntrypointResolver, DoorsEntrypoint> callback) {
+    while (true) {
+      final DoorsEntrypoint cached = entrypoint.get();
+      if (cached != null) {
+        callback.onSuccess(this, cached);
+        return;
+      }
+
+      final DoorsEntrypoint persisted = loadPersisted();
+      if (persisted != null) {
+        callback.onSuccess(this, persisted);
+        return;
+      }
+
+      final Discovery current = discovery.get();
+      if (current != null) {
+        if (current.attach(callback)) {
+          return;
+        }
+        // completed in the meantime
+        continue;
+      }
+
+      final Discovery created = new Discovery(generation.get(), null);
+      if (discovery.compareAndSet(null, created)) {
+        logger.debug("Entrypoint missing, requesting...");
+        created.attach(callback);
+        created.start();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Drops cached entrypoint, e.g. when host has changed. Discovery which is in progress will
+   * complete for callers already attached to it, but its result won't be cached. New callers
+   * start a fresh discovery.
+   */
+  public void clear() {
+    generation.incrementAndGet();
+    entrypoint.set(null);
+    discovery.set(null);
+  }
+
+  /**
+   * Drops cached and persisted entrypoint of the current host. Should be called when server
+   * responds with 404 or expected link is missing.
+   */
+  public void invalidate() {
+    logger.debug("Invalidating entrypoint of {}", hostWrapper.getHost());
+    clear();
+    linksCache.remove(hostWrapper.getHost());
+  }
+
+  /**
+   * @return href of the entrypoint link with given relation
+   * @throws IOException if link is missing, cached entrypoint is invalidated in such case
+   */
+  public String requireHref(DoorsEntrypoint entrypoint, String rel) throws IOException {
+    final Link link = entrypoint.getLinkByRel(rel);
+    if (link == null || link.getHref() == null) {
+      invalidate();
+      throw new IOException("Entrypoint does not provide '" + rel + "' link");
+    }
+    return link.getHref();
+  }
+
+  /**
+   * Invalidates entrypoint if response indicates that cached link is no longer valid, i.e.
+   * request to one of the entrypoint links failed with 404 or 410. Such responses of other
+   * resources (e.g. a removed log) don't affect the entrypoint.
+   */
+  public void onResponse(Response<?> response) {
+    if (response.code() != 404 && response.code() != 410) {
+      return;
+    }
+    final DoorsEntrypoint cached = entrypoint.get();
+    if (cached != null && isLinkOf(cached, response.raw().request().url())) {
+      invalidate();
+    }
+  }
+
+  private static boolean isLinkOf(DoorsEntrypoint entrypoint, HttpUrl url) {
+    for (Link link : entrypoint.getLinks()) {
+      final HttpUrl href = link.getHref() != null ? url.resolve(link.getHref()) : null;
+      // query (e.g. paging of logs) is added by requests, it's not part of the link
+      if (href != null && href.host().equals(url.host()) && href.port() == url.port()
+          && href.encodedPath().equals(url.encodedPath())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Reads persisted links once per generation, so callers arriving while discovery runs
+   * don't re-read and re-parse preferences.
+   */
+  private DoorsEntrypoint loadPersisted() {
+    final int gen = generation.get();
+    if (persistedGeneration.getAndSet(gen) == gen) {
+      return null;
+    }
+    final LinksCache.Entry entry = linksCache.load(hostWrapper.getHost());
+    if (entry == null || !entrypoint.compareAndSet(null, entry.getDoors())) {
+      return null;
+    }
+    if (generation.get() != gen) {
+      entrypoint.compareAndSet(entry.getDoors(), null);
+      return null;
+    }
+
+    logger.debug("Using persisted entrypoint, age: {}ms", entry.getAge());
+    if (entry.needsRevalidation()) {
+      revalidate(null);
+    }
+    return entry.getDoors();
+  }
+
+  /**
+   * Revalidates links with the server, bypassing fresh responses of http cache. Should be
+   * called when the device switches networks.
+   */
+  public void revalidate() {
+    final String host = hostWrapper.getHost();
+    if (host != null && !host.isEmpty()) {
+      revalidate(CacheControl.FORCE_NETWORK.toString());
+    }
+  }
+
+  /**
+   * Starts discovery in background, unless one is already running. Result replaces cached
+   * entrypoint.
+   */
+  private void revalidate(String cacheControl) {
+    final Discovery created = new Discovery(generation.get(), cacheControl);
+    if (discovery.compareAndSet(null, created)) {
+      logger.debug("Revalidating entrypoint");
+      created.start();
+    }
+  }
+
+  private static <T> T bodyOrThrow(Response<T> response) throws IOException {
+    final ResponseBody error = response.errorBody();
+    if (error != null) {
+      throw new IOException(error.string());
+    }
+    if (response.body() == null) {
+      throw new IOException("Empty response: " + response.raw().request().url());
+    }
+    return response.body();
+  }
+
+  /**
+   * Chains 'api' and 'doors' requests and notifies attached callbacks when done.
+   */
+  private class Discovery {
+
+    private final int generation;
+    private final String host = hostWrapper.getHost();
+    private final String cacheControl;
+    private final List<DataCallback<EntrypointResolver, DoorsEntrypoint>> callbacks = new ArrayList<>();
+    private boolean completed;
+
+    Discovery(int generation, String cacheControl) {
+      this.generation = generation;
+      this.cacheControl = cacheControl;
+    }
+
+    /**
+     * @return false if discovery has already completed and callback won't be notified
+     */
+    synchronized boolean attach(DataCallback<EntrypointResolver, DoorsEntrypoint> callback) {
+      if (completed) {
+        return false;
+      }
+      callbacks.add(callback);
+      return true;
+    }
+
+    void start() {
+      service.api(host, cacheControl).enqueue(new Callback<Api>() {
+        @Override
+        public void onResponse(Call<Api> call, Response<Api> response) {
+          try {
+            onApi(bodyOrThrow(response));
+          }
+          catch (Exception e) {
+            fail(e);
+          }
+        }
+
+        @Override
+        public void onFailure(Call<Api> call, Throwable t) {
+          fail(t);
+        }
+      });
+    }
+
+    private void onApi(final Api api) throws IOException {
+      final Link doors = api.getLinkByRel("doors");
+      if (doors == null) {
+        throw new IOException("Api does not provide 'doors' link");
+      }
+
+      service.entrypoint(doors.getHref(), cacheControl).enqueue(new Callback<DoorsEntrypoint>() {
+        @Override
+        public void onResponse(Call<DoorsEntrypoint> call, Response<DoorsEntrypoint> response) {
+          final DoorsEntrypoint result;
+          try {
+            result = bodyOrThrow(response);
+          }
+          catch (Exception e) {
+            fail(e);
+            return;
+          }
+          complete(api, result);
+        }
+
+        @Override
+        public void onFailure(Call<DoorsEntrypoint> call, Throwable t) {
+          fail(t);
+        }
+      });
+    }
+
+    private void complete(Api api, DoorsEntrypoint result) {
+      // result of discovery started before clear() must not replace the current one
+      if (isCurrent()) {
+        entrypoint.set(result);
+        if (isCurrent()) {
+          linksCache.save(host, api, result);
+        }
+        else {
+          entrypoint.compareAndSet(result, null);
+        }
+      }
+
+      for (DataCallback<EntrypointResolver, DoorsEntrypoint> callback : detach()) {
+        callback.onSuccess(EntrypointResolver.this, result);
+      }
+    }
+
+    private void fail(Throwable t) {
+      logger.warn("Entrypoint discovery failed: {}", t.getMessage());
+      for (DataCallback<EntrypointResolver, DoorsEntrypoint> callback : detach()) {
+        callback.onFailure(EntrypointResolver.this, t);
+      }
+    }
+
+    private boolean isCurrent() {
+      return EntrypointResolver.this.generation.get() == generation;
+    }
+
+    private List<DataCallback<EntrypointResolver, DoorsEntrypoint>> detach() {
+      discovery.compareAndSet(this, null);
+      synchronized (this) {
+        completed = true;
+        return new ArrayList<>(callbacks);
+      }
+    }
+  }
+}
@@ -0,0 +1,250 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread pools of the app, sized by the number of cores:
+ * <ul>
+ *   <li>scheduler - timers only (polling ticks, retries, hedges, deadlines), its tasks never
+ *   block; delayed tasks need an unbounded queue</li>
+ *   <li>network - workers of {@link RequestScheduler}, which queues tasks itself, so the pool
+ *   hands tasks over directly and rejects them when all threads are busy</li>
+ *   <li>cpu - decoding, encoding and delivery of state updates, bounded queue</li>
+ *   <li>http - calls of the okhttp dispatcher, which runs at most the given number of calls at
+ *   once and keeps the rest itself; a finishing call may still hold its thread when the next
+ *   one is handed over, so queue of the same size is enough</li>
+ * </ul>
+ * Threads are named after their pool, rejected tasks are counted, see {@link Gauge}.
+ */
+public class ExecutorPools {
+
+  static final long KEEP_ALIVE = 30;
+  static final int CPU_QUEUE_SIZE = 32;
+
+  private final int networkThreads;
+  private final Pool<ScheduledThreadPoolExecutor> scheduler;
+  private final Pool<ThreadPoolExecutor> network;
+  private final Pool<ThreadPoolExecutor> cpu;
+  private final Pool<ThreadPoolExecutor> http;
+
+  /**
+   * @param cores number of available processors
+   * @param maxCalls maximum number of calls run by the http client at once
+   */
+  public ExecutorPools(int cores, int maxCalls) {
+    super();
+    final boolean lowEnd = cores <= 2;
+    networkThreads = lowEnd ? 2 : 4;
+
+    final Pool.Rejections schedulerRejections = new Pool.Rejections();
+    scheduler = new Pool<>("scheduler", new ScheduledThreadPoolExecutor(lowEnd ? 1 : 2,
+        new NamedThreadFactory("scheduler"), schedulerRejections), schedulerRejections);
+
+    // user commands may run above the limit of the scheduler, hence the extra threads
+    final Pool.Rejections networkRejections = new Pool.Rejections();
+    network = new Pool<>("network", new ThreadPoolExecutor(0, networkThreads + 2,
+        KEEP_ALIVE, TimeUnit.SECONDS, new SynchronousQueue<>(),
+        new NamedThreadFactory("network"), networkRejections), networkRejections);
+
+    final int cpuThreads = Math.max(1, Math.min(cores - 1, 2));
+    final Pool.Rejections cpuRejections = new Pool.Rejections();
+    final ThreadPoolExecutor cpuExecutor = new ThreadPoolExecutor(cpuThreads, cpuThreads,
+        KEEP_ALIVE, TimeUnit.SECONDS, new ArrayBlockingQueue<>(CPU_QUEUE_SIZE),
+        new NamedThreadFactory("cpu"), cpuRejections);
+    cpuExecutor.allowCoreThreadTimeOut(true);
+    cpu = new Pool<>("cpu", cpuExecutor, cpuRejections);
+
+    final Pool.Rejections httpRejections = new Pool.Rejections();
+    final ThreadPoolExecutor httpExecutor = new ThreadPoolExecutor(maxCalls, maxCalls,
+        KEEP_ALIVE, TimeUnit.SECONDS, new ArrayBlockingQueue<>(maxCalls),
+        new NamedThreadFactory("http"), httpRejections);
+    httpExecutor.allowCoreThreadTimeOut(true);
+    http = new Pool<>("http", httpExecutor, httpRejections);
+  }
+
+  public ScheduledExecutorService getScheduler() {
+    return scheduler.executor;
+  }
+
+  public ExecutorService getNetwork() {
+    return network.executor;
+  }
+
+  public ExecutorService getCpu() {
+    return cpu.executor;
+  }
+
+  /**
+   * @return executor of the okhttp dispatcher
+   */
+  public ExecutorService getHttp() {
+    return http.executor;
+  }
+
+  /**
+   * @return number of {@link RequestScheduler} tasks which may run at once
+   */
+  public int getNetworkThreads() {
+    return networkThreads;
+  }
+
+  /**
+   * @return current gauges of all pools
+   */
+  public List<Gauge> getGauges() {
+    final List<Gauge> gauges = new ArrayList<>();
+    gauges.add(scheduler.gauge());
+    gauges.add(network.gauge());
+    gauges.add(cpu.gauge());
+    gauges.add(http.gauge());
+    return gauges;
+  }
+
+  @Override
+  public String toString() {
+    return getGauges().toString();
+  }
+
+  private static final class Pool<E extends ThreadPoolExecutor> {
+
+    final String name;
+    final E executor;
+    final Rejections rejections;
+
+    Pool(String name, E executor, Rejections rejections) {
+      this.name = name;
+      this.executor = executor;
+      this.rejections = rejections;
+    }
+
+    Gauge gauge() {
+      return new Gauge(name, executor.getPoolSize(), executor.getActiveCount(),
+          executor.getQueue().size(), executor.getCompletedTaskCount(), rejections.count.get());
+    }
+
+    /**
+     * Counts rejected tasks and lets the caller know with the exception.
+     */
+    static final class Rejections extends ThreadPoolExecutor.AbortPolicy {
+
+      final AtomicLong count = new AtomicLong();
+
+      @Override
+      public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+        count.incrementAndGet();
+        super.rejectedExecution(r, executor);
+      }
+    }
+  }
+
+  private static final class NamedThreadFactory implements ThreadFactory {
+
+    private final String prefix;
+    private final AtomicInteger number = new AtomicInteger(1);
+
+    NamedThreadFactory(String pool) {
+      this.prefix = "sesame-" + pool + "-";
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      final Thread thread = new Thread(runnable, prefix + number.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+  /**
+   * Snapshot of pool usage.
+   */
+  public static class Gauge {
+
+    private final String name;
+    private final int threads;
+    private final int active;
+    private final int queued;
+    private final long completed;
+    private final long rejected;
+
+    Gauge(String name, int threads, int active, int queued, long completed, long rejected) {
+      this.name = name;
+      this.threads = threads;
+      this.active = active;
+      this.queued = queued;
+      this.completed = completed;
+      this.rejected = rejected;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public int getThreadCount() {
+      return threads;
+    }
+
+    public int getActiveCount() {
+      return active;
+    }
+
+    public int getQueuedCount() {
+      return queued;
+    }
+
+    public long getCompletedCount() {
+      return completed;
+    }
+
+    public long getRejectedCount() {
+      return rejected;
+    }
+
+    @Override
+    public String toString() {
+      return name + "{threads=" + threads + ", active=" + active + ", queued=" + queued
+          + ", completed=" + completed + ", rejected=" + rejected + "}";
+    }
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data;
+
+import android.content.SharedPreferences;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+import com.imgtec.sesame.data.api.pojo.Api;
+import com.imgtec.sesame.data.api.pojo.DoorsEntrypoint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists resolved HATEOAS links ({@link Api} and {@link DoorsEntrypoint}) per host, so
+ * door requests can be issued after cold start without entrypoint discovery.
+ */
+public class LinksCache {
+
+  static final long TTL = TimeUnit.DAYS.toMillis(7);
+  static final long REVALIDATE_AFTER = TimeUnit.HOURS.toMillis(1);
+
+  public static class Entry {
+
+    @SerializedName("savedAt")
+    @Expose
+    private long savedAt;
+
+    @SerializedName("api")
+    @Expose
+    private Api api;
+
+    @SerializedName("doors")
+    @Expose
+    private DoorsEntrypoint doors;
+
+    Entry(long savedAt, Api api, DoorsEntrypoint doors) {
+      this.savedAt = savedAt;
+      this.api = api;
+      this.doors = doors;
+    }
+
+    public Api getApi() {
+      return api;
+    }
+
+    public DoorsEntrypoint getDoors() {
+      return doors;
+    }
+
+    public long getAge() {
+      return System.currentTimeMillis() - savedAt;
+    }
+
+    public boolean needsRevalidation() {
+      return getAge() > REVALIDATE_AFTER;
+    }
+  }
+
+  private final Logger logger = LoggerFactory.getLogger(getClass().getSimpleName());
+  private final SharedPreferences sharedPreferences;
+  private final Gson gson;
+
+  public LinksCache(SharedPreferences prefs, Gson gson) {
+    super();
+    this.sharedPreferences = prefs;
+    this.gson = gson;
+  }
+
+  /**
+   * @return cached links of given host or null if there are none or they are expired
+   */
+  public Entry load(String host) {
+    if (host == null || host.isEmpty()) {
+      return null;
+    }
+
+    final String json = sharedPreferences.getString(host, null);
+    if (json == null) {
+      return null;
+    }
+
+    try {
+      Entry entry = gson.fromJson(json, Entry.class);
+      if (entry == null || entry.doors == null || entry.getAge() < 0 || entry.getAge() > TTL) {
+        remove(host);
+        return null;
+      }
+      return entry;
+    }
+    catch (JsonParseException e) {
+      logger.warn("Dropping corrupted links of {}", host);
+      remove(host);
+      return null;
+    }
+  }
+
+  public void save(String host, Api api, DoorsEntrypoint doors) {
+    if (host == null || host.isEmpty()) {
+      return;
+    }
+    final String json = gson.toJson(new Entry(System.currentTimeMillis(), api, doors));
+    sharedPreferences.edit().putString(host, json).apply();
+  }
+
+  public void remove(String host) {
+    if (host == null || host.isEmpty()) {
+      return;
+    }
+    sharedPreferences.edit().remove(host).apply();
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data;
+
+import com.imgtec.sesame.data.api.DoorsHelper;
+import com.imgtec.sesame.data.api.pojo.DoorsState;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.CacheControl;
+import okhttp3.Headers;
+
+/**
+ * Calculates delay of the next door state poll. Doors in move ("unknown" state) are polled
+ * frequently, while opened/closed doors are polled with exponentially growing, jittered interval.
+ * Server hints ('Cache-Control: max-age', 'Retry-After') are treated as a lower bound.
+ */
+public class PollingScheduler {
+
+  static final long MOVING_INTERVAL = 500;
+  static final long IDLE_MIN_INTERVAL = TimeUnit.SECONDS.toMillis(2);
+  static final long IDLE_MAX_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+  static final long MAX_HINT = TimeUnit.MINUTES.toMillis(5);
+  static final int MAX_MOVING_POLLS = 60;
+  static final long MIN_POLL_DEADLINE = TimeUnit.SECONDS.toMillis(2);
+  static final long MAX_POLL_DEADLINE = TimeUnit.SECONDS.toMillis(10);
+  static final double JITTER = 0.2;
+
+  private final Random random;
+
+  private boolean moving = true;
+  private int movingPolls;
+  private String lastState;
+  private long idleInterval = IDLE_MIN_INTERVAL;
+  private long hint;
+  private int failures;
+
+  public PollingScheduler() {
+    this(new Random());
+  }
+
+  PollingScheduler(Random random) {
+    super();
+    this.random = random;
+  }
+
+  /**
+   * Restores initial (fast) polling, e.g. when polling is started or door command was sent.
+   */
+  public synchronized void reset() {
+    moving = true;
+    movingPolls = 0;
+    lastState = null;
+    idleInterval = IDLE_MIN_INTERVAL;
+    hint = 0;
+    failures = 0;
+  }
+
+  public synchronized void onStateReceived(DoorsState state, Headers headers) {
+    failures = 0;
+    hint = parseHint(headers);
+
+    final boolean idle = DoorsHelper.isDoorOpened(state) || DoorsHelper.isDoorClosed(state);
+    if (!idle && movingPolls < MAX_MOVING_POLLS) {
+      moving = true;
+      movingPolls++;
+      idleInterval = IDLE_MIN_INTERVAL;
+    }
+    else if (!idle) {
+      // state stays 'unknown' for too long (doors stuck?), stop polling at full rate
+      moving = false;
+      idleInterval = Math.min(idleInterval * 2, IDLE_MAX_INTERVAL);
+    }
+    else if (moving || !state.getState().equalsIgnoreCase(lastState)) {
+      moving = false;
+      movingPolls = 0;
+      idleInterval = IDLE_MIN_INTERVAL;
+    }
+    else {
+      idleInterval = Math.min(idleInterval * 2, IDLE_MAX_INTERVAL);
+    }
+    lastState = state != null ? state.getState() : null;
+  }
+
+  /**
+   * @param headers headers of the error response or null if there was no response at all
+   */
+  public synchronized void onFailure(Headers headers) {
+    failures++;
+    hint = headers != null ? parseHint(headers) : 0;
+  }
+
+  /**
+   * @return delay in milliseconds before the next poll should be performed
+   */
+  public synchronized long nextDelay() {
+    long delay = interval();
+    if (!moving || failures > 0) {
+      delay += (long) (delay * JITTER * (2 * random.nextDouble() - 1));
+    }
+    return Math.max(delay, hint);
+  }
+
+  /**
+   * @return time in milliseconds a single poll may take before it is abandoned, it grows
+   * with polling interval so slow server is not flooded with retries
+   */
+  public synchronized long pollDeadline() {
+    return Math.min(Math.max(2 * interval(), MIN_POLL_DEADLINE), MAX_POLL_DEADLINE);
+  }
+
+  private long interval() {
+    if (failures > 0) {
+      return Math.min(IDLE_MIN_INTERVAL << Math.min(failures, 16), IDLE_MAX_INTERVAL);
+    }
+    return moving ? MOVING_INTERVAL : idleInterval;
+  }
+
+  private static long parseHint(Headers headers) {
+    if (headers == null) {
+      return 0;
+    }
+
+    long hint = 0;
+    final CacheControl cacheControl = CacheControl.parse(headers);
+    if (cacheControl.maxAgeSeconds() > 0) {
+      hint = TimeUnit.SECONDS.toMillis(cacheControl.maxAgeSeconds());
+    }
+
+    final String retryAfter = headers.get("Retry-After");
+    if (retryAfter != null) {
+      try {
+        hint = Math.max(hint, TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim())));
+      }
+      catch (NumberFormatException e) {
+        final Date date = headers.getDate("Retry-After");
+        if (date != null) {
+          hint = Math.max(hint, date.getTime() - System.currentTimeMillis());
+        }
+      }
+    }
+    return Math.min(Math.max(hint, 0), MAX_HINT);
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coalesces identical requests. The first caller asking for a resource performs the request,
+ * callers which arrive while it is in flight are attached to it and receive the same result.
+ * Caller is attached only if its deadline is not later than the deadline of the request in
+ * flight, so it never fails early because the shared request ran out of time.
+ * @param <S> data service
+ */
+public class RequestCoalescer<S> {
+
+  public enum Role {
+    /**
+     * Caller performs the request and shares the result.
+     */
+    LEADER,
+    /**
+     * Callback is attached to the request in flight.
+     */
+    FOLLOWER,
+    /**
+     * Caller has more time than the request in flight, it performs its own request
+     * and does not share the result.
+     */
+    ALONE
+  }
+
+  private final Map<String, InFlight> inFlight = new HashMap<>();
+
+  /**
+   * Registers callback for the resource identified by key.
+   * @param deadline deadline of the caller
+   */
+  public synchronized Role join(String key, DataCallback<S, ?> callback, Deadline deadline) {
+    final InFlight request = inFlight.get(key);
+    if (request == null) {
+      final InFlight created = new InFlight(deadline);
+      created.callbacks.add(callback);
+      inFlight.put(key, created);
+      return Role.LEADER;
+    }
+    if (deadline.isAfter(request.deadline)) {
+      return Role.ALONE;
+    }
+    request.callbacks.add(callback);
+    return Role.FOLLOWER;
+  }
+
+  /**
+   * Detaches callback from the request, it won't be notified about the result.
+   * @return true if nobody else waits for the request, so it can be aborted
+   */
+  public synchronized boolean leave(String key, DataCallback<S, ?> callback) {
+    final InFlight request = inFlight.get(key);
+    if (request == null) {
+      return true;
+    }
+    request.callbacks.remove(callback);
+    return request.callbacks.isEmpty();
+  }
+
+  @SuppressWarnings("unchecked")
+  public <T> void complete(String key, S service, T result) {
+    for (DataCallback<S, ?> callback : remove(key)) {
+      ((DataCallback<S, T>) callback).onSuccess(service, result);
+    }
+  }
+
+  public void fail(String key, S service, Throwable t) {
+    for (DataCallback<S, ?> callback : remove(key)) {
+      callback.onFailure(service, t);
+    }
+  }
+
+  private synchronized List<DataCallback<S, ?>> remove(String key) {
+    final InFlight request = inFlight.remove(key);
+    return request != null ? request.callbacks : new ArrayList<DataCallback<S, ?>>();
+  }
+
+  private final class InFlight {
+
+    private final Deadline deadline;
+    private final List<DataCallback<S, ?>> callbacks = new ArrayList<>();
+
+    InFlight(Deadline deadline) {
+      this.deadline = deadline;
+    }
+  }
+}
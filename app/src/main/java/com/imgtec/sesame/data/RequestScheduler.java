@@ -0,0 +1,393 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data;
+
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs data service tasks in priority order. User initiated commands are started immediately,
+ * other tasks wait in priority queue until one of limited number of slots is free. Background
+ * tasks can never take all slots and their queue is bounded.
+ * <p>
+ * Tasks performing asynchronous calls are submitted with {@link #submitAsync(Priority, AsyncTask)},
+ * they keep their slot until the call completes, so the limits apply to requests in flight,
+ * not just to dispatching them.
+ */
+public class RequestScheduler {
+
+  public enum Priority {
+    /**
+     * Commands triggered by the user, e.g. opening doors.
+     */
+    USER,
+    /**
+     * Data displayed on the visible screen.
+     */
+    FOREGROUND,
+    /**
+     * Polling, revalidation and other housekeeping.
+     */
+    BACKGROUND
+  }
+
+  /**
+   * Task which completes asynchronously. Its slot is released when it runs the given
+   * callback, not when {@link #run(Runnable)} returns.
+   */
+  public interface AsyncTask {
+
+    /**
+     * @param done has to be run exactly once when the task is done, whatever the outcome
+     */
+    void run(Runnable done);
+  }
+
+  private final ExecutorService executor;
+  private final int maxRunning;
+  private final int maxBackgroundRunning;
+  private final int maxBackgroundQueued;
+  private final NavigableSet<Task> queue = new TreeSet<>();
+  private final AtomicLong sequence = new AtomicLong();
+  private final Metrics[] metrics = new Metrics[Priority.values().length];
+  private int running;
+  private int backgroundRunning;
+  private int backgroundQueued;
+
+  /**
+   * @param executor executor running tasks, it must not queue tasks on its own; task rejected
+   *                 by the executor stays queued and is run by the next worker to finish
+   * @param maxRunning max number of FOREGROUND and BACKGROUND tasks running at once
+   * @param maxBackgroundRunning max number of BACKGROUND tasks running at once
+   * @param maxBackgroundQueued max number of BACKGROUND tasks waiting in queue
+   */
+  public RequestScheduler(ExecutorService executor, int maxRunning, int maxBackgroundRunning,
+                          int maxBackgroundQueued) {
+    super();
+    this.executor = executor;
+    this.maxRunning = maxRunning;
+    this.maxBackgroundRunning = Math.min(maxBackgroundRunning, maxRunning);
+    this.maxBackgroundQueued = maxBackgroundQueued;
+    for (Priority p : Priority.values()) {
+      metrics[p.ordinal()] = new Metrics(p);
+    }
+  }
+
+  /**
+   * @return future which can be used to cancel the task before it starts
+   * @throws RejectedExecutionException if background queue is full
+   */
+  public FutureTask<Void> submit(Priority priority, final Runnable runnable) {
+    return submitAsync(priority, done -> {
+      try {
+        runnable.run();
+      }
+      finally {
+        done.run();
+      }
+    });
+  }
+
+  /**
+   * @return future which can be used to cancel the task before it starts
+   * @throws RejectedExecutionException if background queue is full
+   */
+  public FutureTask<Void> submitAsync(Priority priority, AsyncTask work) {
+    final Task task = new Task(priority, sequence.getAndIncrement(), new Invocation(work));
+    synchronized (this) {
+      if (priority == Priority.BACKGROUND) {
+        if (backgroundQueued >= maxBackgroundQueued) {
+          throw new RejectedExecutionException("Too many background tasks queued");
+        }
+        backgroundQueued++;
+      }
+      queue.add(task);
+      metrics[priority.ordinal()].queued++;
+    }
+    promote();
+    return task;
+  }
+
+  /**
+   * @return executor which submits tasks with given priority
+   */
+  public Executor asExecutor(final Priority priority) {
+    return command -> submit(priority, command);
+  }
+
+  public synchronized Metrics getMetrics(Priority priority) {
+    return new Metrics(metrics[priority.ordinal()]);
+  }
+
+  private void promote() {
+    synchronized (this) {
+      Task task;
+      while ((task = next()) != null) {
+        try {
+          executor.execute(task);
+        }
+        catch (RejectedExecutionException e) {
+          // all threads busy, the next worker to finish runs the task itself
+          return;
+        }
+        started(task);
+      }
+    }
+  }
+
+  /**
+   * @return first queued task which may start now, canceled tasks are dropped on the way
+   */
+  private Task next() {
+    for (Iterator<Task> it = queue.iterator(); it.hasNext(); ) {
+      final Task task = it.next();
+      if (task.isCancelled()) {
+        it.remove();
+        dequeued(task);
+        continue;
+      }
+
+      if (task.priority != Priority.USER && running >= maxRunning) {
+        continue;
+      }
+      if (task.priority == Priority.BACKGROUND && backgroundRunning >= maxBackgroundRunning) {
+        continue;
+      }
+      return task;
+    }
+    return null;
+  }
+
+  private void started(Task task) {
+    queue.remove(task);
+    dequeued(task);
+    running++;
+    if (task.priority == Priority.BACKGROUND) {
+      backgroundRunning++;
+    }
+    metrics[task.priority.ordinal()].onStarted(System.nanoTime() - task.enqueuedAt);
+  }
+
+  private void dequeued(Task task) {
+    metrics[task.priority.ordinal()].queued--;
+    if (task.priority == Priority.BACKGROUND) {
+      backgroundQueued--;
+    }
+  }
+
+  /**
+   * @return next task to be run by the thread which has just finished the task, so the next
+   * one doesn't depend on the executor accepting it
+   */
+  private Task finished(Task task) {
+    final Task next;
+    synchronized (this) {
+      running--;
+      if (task.priority == Priority.BACKGROUND) {
+        backgroundRunning--;
+      }
+      next = next();
+      if (next != null) {
+        started(next);
+      }
+    }
+    promote();
+    return next;
+  }
+
+  private class Task extends FutureTask<Void> implements Comparable<Task> {
+
+    final Priority priority;
+    final long sequence;
+    final long enqueuedAt = System.nanoTime();
+    final Invocation invocation;
+
+    Task(Priority priority, long sequence, Invocation invocation) {
+      super(invocation, null);
+      this.priority = priority;
+      this.sequence = sequence;
+      this.invocation = invocation;
+      invocation.task = this;
+    }
+
+    @Override
+    public void run() {
+      Task task = this;
+      while (task != null) {
+        try {
+          task.runTask();
+        }
+        finally {
+          task = task.invocation.returned();
+        }
+      }
+    }
+
+    private void runTask() {
+      super.run();
+    }
+
+    @Override
+    public int compareTo(Task other) {
+      if (priority != other.priority) {
+        return priority.compareTo(other.priority);
+      }
+      return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+    }
+  }
+
+  /**
+   * Runs the work of a task and releases its slot once both the worker has returned and the
+   * work has signalled completion, whichever comes last.
+   */
+  private final class Invocation implements Runnable {
+
+    final AsyncTask work;
+    final AtomicInteger pending = new AtomicInteger(2);
+    final AtomicBoolean signalled = new AtomicBoolean(false);
+    volatile Task task;
+    volatile boolean invoked;
+
+    Invocation(AsyncTask work) {
+      this.work = work;
+    }
+
+    @Override
+    public void run() {
+      invoked = true;
+      boolean returned = false;
+      try {
+        work.run(this::done);
+        returned = true;
+      }
+      finally {
+        if (!returned) {
+          done();
+        }
+      }
+    }
+
+    /**
+     * Completion signalled after the worker returned releases the slot on the signalling
+     * thread, which also runs the next task.
+     */
+    private void done() {
+      if (!signalled.compareAndSet(false, true)) {
+        return;
+      }
+      final Task next = release();
+      if (next != null) {
+        next.run();
+      }
+    }
+
+    /**
+     * @return next task to run, if worker is the last one to finish
+     */
+    Task returned() {
+      if (!invoked) {
+        // canceled after it was started, work never ran
+        done();
+      }
+      return release();
+    }
+
+    private Task release() {
+      return pending.decrementAndGet() == 0 ? finished(task) : null;
+    }
+  }
+
+  /**
+   * Queue wait statistics of tasks with given priority.
+   */
+  public static class Metrics {
+
+    private final Priority priority;
+    private long started;
+    private long totalWait;
+    private long maxWait;
+    private int queued;
+
+    Metrics(Priority priority) {
+      this.priority = priority;
+    }
+
+    Metrics(Metrics other) {
+      this.priority = other.priority;
+      this.started = other.started;
+      this.totalWait = other.totalWait;
+      this.maxWait = other.maxWait;
+      this.queued = other.queued;
+    }
+
+    void onStarted(long waitNanos) {
+      started++;
+      totalWait += waitNanos;
+      maxWait = Math.max(maxWait, waitNanos);
+    }
+
+    public Priority getPriority() {
+      return priority;
+    }
+
+    public long getStartedCount() {
+      return started;
+    }
+
+    public int getQueuedCount() {
+      return queued;
+    }
+
+    public long getAverageWaitMillis() {
+      return started > 0 ? TimeUnit.NANOSECONDS.toMillis(totalWait / started) : 0;
+    }
+
+    public long getMaxWaitMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(maxWait);
+    }
+
+    @Override
+    public String toString() {
+      return priority + "{started=" + started + ", queued=" + queued
+          + ", avgWait=" + getAverageWaitMillis() + "ms, maxWait=" + getMaxWaitMillis() + "ms}";
+    }
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persists the last successful result of a request per host, so it can be shown at once while
+ * the fresh one is being requested. Each snapshot is a file holding time it was saved at,
+ * followed by gzipped json of the result.
+ */
+public class SnapshotStore {
+
+  static final long TTL = TimeUnit.DAYS.toMillis(7);
+
+  public static final class Snapshot<T> {
+
+    private final T value;
+    private final long savedAt;
+
+    Snapshot(T value, long savedAt) {
+      this.value = value;
+      this.savedAt = savedAt;
+    }
+
+    public T getValue() {
+      return value;
+    }
+
+    /**
+     * @return milliseconds since the snapshot was saved
+     */
+    public long getAge() {
+      return System.currentTimeMillis() - savedAt;
+    }
+  }
+
+  private final Logger logger = LoggerFactory.getLogger(getClass().getSimpleName());
+  private final File dir;
+  private final Gson gson;
+
+  public SnapshotStore(File dir, Gson gson) {
+    super();
+    this.dir = dir;
+    this.gson = gson;
+  }
+
+  /**
+   * @return snapshot of given host or null if there is none or it is expired
+   */
+  public <T> Snapshot<T> load(String host, String name, Class<T> type) {
+    final File file = file(host, name);
+    if (file == null || !file.exists()) {
+      return null;
+    }
+
+    Closeable stream = null;
+    try {
+      final DataInputStream input = new DataInputStream(new FileInputStream(file));
+      stream = input;
+      final long savedAt = input.readLong();
+      final Reader reader = new InputStreamReader(new GZIPInputStream(input), "UTF-8");
+      // closes inflater of the gzip stream too
+      stream = reader;
+      final Snapshot<T> snapshot = new Snapshot<>(gson.fromJson(reader, type), savedAt);
+      if (snapshot.value == null || snapshot.getAge() < 0 || snapshot.getAge() > TTL) {
+        file.delete();
+        return null;
+      }
+      return snapshot;
+    }
+    catch (IOException | JsonParseException e) {
+      logger.warn("Dropping corrupted snapshot {} of {}", name, host);
+      file.delete();
+      return null;
+    }
+    finally {
+      close(stream);
+    }
+  }
+
+  public void save(String host, String name, Object value) {
+    final File file = file(host, name);
+    if (file == null || value == null) {
+      return;
+    }
+
+    File tmp = null;
+    Closeable stream = null;
+    try {
+      file.getParentFile().mkdirs();
+      tmp = File.createTempFile(name, ".tmp", file.getParentFile());
+      final DataOutputStream output =
+          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+      stream = output;
+      output.writeLong(System.currentTimeMillis());
+      final Writer writer = new OutputStreamWriter(new GZIPOutputStream(output), "UTF-8");
+      stream = writer;
+      gson.toJson(value, writer);
+      writer.close();
+      stream = null;
+      if (!tmp.renameTo(file)) {
+        throw new IOException("Can't rename " + tmp);
+      }
+    }
+    catch (IOException e) {
+      logger.warn("Saving snapshot {} of {} failed: {}", name, host, e.getMessage());
+      if (tmp != null) {
+        tmp.delete();
+      }
+    }
+    finally {
+      close(stream);
+    }
+  }
+
+  private File file(String host, String name) {
+    if (host == null || host.isEmpty()) {
+      return null;
+    }
+    try {
+      return new File(new File(dir, URLEncoder.encode(host, "UTF-8")), name);
+    }
+    catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void close(Closeable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      }
+      catch (IOException ignored) {
+      }
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+/**
+ * Creates calls with connect and read timeouts of their host estimated by {@link RttEstimator}.
+ * Timeouts of the base client are used until there are enough samples and remain the upper
+ * bound. Calls are made by clients derived from the base one, so they share its connection
+ * pool, dispatcher, cache and interceptors; derived client is replaced only when the timeout
+ * changes by more than {@link #QUANTUM}.
+ */
+public class AdaptiveTimeoutCallFactory implements Call.Factory {
+
+  static final long QUANTUM = 500;
+
+  private final Logger logger = LoggerFactory.getLogger(getClass().getSimpleName());
+  private final OkHttpClient client;
+  private final RttEstimator estimator;
+  private final Map<String, Tuned> clients = new ConcurrentHashMap<>();
+
+  public AdaptiveTimeoutCallFactory(OkHttpClient client, RttEstimator estimator) {
+    super();
+    this.client = client;
+    this.estimator = estimator;
+  }
+
+  @Override
+  public Call newCall(Request request) {
+    final HttpUrl url = request.url();
+    final long estimated = estimator.getTimeout(url);
+    if (estimated < 0) {
+      return client.newCall(request);
+    }
+
+    final long timeout = (estimated + QUANTUM - 1) / QUANTUM * QUANTUM;
+    final String key = url.host() + ":" + url.port();
+    Tuned tuned = clients.get(key);
+    if (tuned == null || tuned.timeout != timeout) {
+      tuned = new Tuned(timeout, client.newBuilder()
+          .connectTimeout(Math.min(timeout, client.connectTimeoutMillis()), TimeUnit.MILLISECONDS)
+          .readTimeout(Math.min(timeout, client.readTimeoutMillis()), TimeUnit.MILLISECONDS)
+          .build());
+      clients.put(key, tuned);
+      logger.debug("Timeout of {} set to {}ms, {}", key, timeout, estimator.getEstimate(url));
+    }
+    return tuned.client.newCall(request);
+  }
+
+  private static final class Tuned {
+
+    final long timeout;
+    final OkHttpClient client;
+
+    Tuned(long timeout, OkHttpClient client) {
+      this.timeout = timeout;
+      this.client = client;
+    }
+  }
+}
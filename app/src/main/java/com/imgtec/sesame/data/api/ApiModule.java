@@ -36,14 +36,18 @@ import com.google.gson.GsonBuilder;
 import com.imgtec.di.PerApp;
 import com.imgtec.sesame.BuildConfig;
 import com.imgtec.sesame.app.App;
+import com.imgtec.sesame.data.ExecutorPools;
 import com.imgtec.sesame.data.Preferences;
+import com.imgtec.sesame.data.api.pojo.PojoTypeAdapterFactory;
 
 import java.io.File;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import dagger.Module;
 import dagger.Provides;
 import okhttp3.Cache;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
 import okhttp3.logging.HttpLoggingInterceptor;
 import retrofit2.Retrofit;
@@ -57,6 +61,18 @@ import retrofit2.converter.gson.GsonConverterFactory;
 public class ApiModule {
 
   private static final long CACHE_DISK_SIZE = 50 * 1024 * 1024;
+  private static final int CACHE_MEMORY_SIZE = 512 * 1024;
+  public static final int MAX_REQUESTS = 16;
+  /**
+   * One connection is held by the state channel for its whole lifetime.
+   */
+  public static final int MAX_REQUESTS_PER_HOST = 5;
+  /**
+   * Hedged calls get their second request after p95 of observed latency, at most 5% of calls
+   * are hedged.
+   */
+  private static final double HEDGE_PERCENTILE = 0.95;
+  private static final double HEDGE_BUDGET = 0.05;
 
   private static String HOST = "http://example.com";
 
@@ -80,17 +96,37 @@ public class ApiModule {
 
   @Provides
   @PerApp
-  OkHttpClient provideOkHttpClient(App app, AuthInterceptor oauthInterceptor) {
+  RttEstimator provideRttEstimator() {
+    return new RttEstimator();
+  }
+
+  /**
+   * Timeouts of the client are the upper bound, calls made by Retrofit get shorter ones
+   * estimated from round trip time of their host, see {@link AdaptiveTimeoutCallFactory}.
+   */
+  @Provides
+  @PerApp
+  OkHttpClient provideOkHttpClient(App app, AuthInterceptor oauthInterceptor,
+                                   RttEstimator rttEstimator, ExecutorPools pools) {
     File cacheDir = new File(app.getCacheDir(), "http");
     Cache cache = new Cache(cacheDir, CACHE_DISK_SIZE);
 
     HttpLoggingInterceptor loggingInterceptor = new HttpLoggingInterceptor();
     loggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BODY);
 
+    // calls complete on a named pool of bounded size, reported with the other pools
+    Dispatcher dispatcher = new Dispatcher(pools.getHttp());
+    dispatcher.setMaxRequests(MAX_REQUESTS);
+    dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+
     OkHttpClient.Builder okHttpClientBuilder = new OkHttpClient
         .Builder()
+        .dispatcher(dispatcher)
         .cache(cache)
+        .addInterceptor(new CircuitBreakerInterceptor())
         .addInterceptor(oauthInterceptor)
+        .addNetworkInterceptor(new CachePolicyInterceptor())
+        .addNetworkInterceptor(rttEstimator)
         .connectTimeout(10, TimeUnit.SECONDS)
         .writeTimeout(10, TimeUnit.SECONDS)
         .readTimeout(30, TimeUnit.SECONDS);
@@ -105,16 +141,37 @@ public class ApiModule {
   @Provides
   @PerApp
   Gson provideGson() {
-    Gson gson = new GsonBuilder().create();
+    Gson gson = new GsonBuilder()
+        .registerTypeAdapterFactory(new PojoTypeAdapterFactory())
+        .create();
     return gson;
   }
 
   @Provides @PerApp
-  Retrofit provideRetrofit(HostWrapper hostWrapper, Gson gson, OkHttpClient okHttpClient) {
+  ResponseMemoryCache provideResponseMemoryCache(Gson gson) {
+    return new ResponseMemoryCache(gson, CACHE_MEMORY_SIZE);
+  }
+
+  @Provides @PerApp
+  HedgePolicy provideHedgePolicy() {
+    return new HedgePolicy(HEDGE_PERCENTILE, HEDGE_BUDGET);
+  }
+
+  @Provides @PerApp
+  Retrofit provideRetrofit(HostWrapper hostWrapper, Gson gson, OkHttpClient okHttpClient,
+                           ResponseMemoryCache memoryCache, HedgePolicy hedgePolicy,
+                           RttEstimator rttEstimator, ScheduledExecutorService executorService) {
     Retrofit retrofit = new Retrofit.Builder()
+        // memory cache goes first, so calls answered from memory are not hedged
+        .addCallAdapterFactory(MemoryCacheCallAdapterFactory.create(memoryCache))
+        .addCallAdapterFactory(HedgingCallAdapterFactory.create(hedgePolicy, executorService))
+        .addConverterFactory(CborConverterFactory.create(gson))
         .addConverterFactory(GsonConverterFactory.create(gson))
         .baseUrl(HOST)
-        .client(okHttpClient)
+        .callFactory(new CircuitBreakerInterceptor.CallFactory(
+            new AdaptiveTimeoutCallFactory(okHttpClient, rttEstimator)))
+        // callbacks only chain requests and hand results over, no need to go through main thread
+        .callbackExecutor(Runnable::run)
         .build();
     return retrofit;
   }
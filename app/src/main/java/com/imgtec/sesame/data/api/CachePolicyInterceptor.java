@@ -0,0 +1,132 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data.api;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Network interceptor which replaces caching headers of the server with a policy of the
+ * requested resource. Resource is identified by {@link #REL_HEADER} set on the api method:
+ * <ul>
+ *   <li>state - never stored, server directives are kept as polling hints</li>
+ *   <li>stats - fresh for {@link #STATS_MAX_AGE}, then revalidated</li>
+ *   <li>logs - revalidated on every request, new entries are added to the head page</li>
+ *   <li>api, doors - fresh for {@link #LINKS_MAX_AGE}, then revalidated</li>
+ * </ul>
+ * Responses without validators get Last-Modified from their Date, so revalidation can end
+ * with 304.
+ */
+public class CachePolicyInterceptor implements Interceptor {
+
+  public static final String REL_HEADER = "X-Cache-Rel";
+  public static final String STATE = REL_HEADER + ": state";
+  public static final String STATS = REL_HEADER + ": stats";
+  public static final String LOGS = REL_HEADER + ": logs";
+  public static final String API = REL_HEADER + ": api";
+  public static final String DOORS = REL_HEADER + ": doors";
+
+  /**
+   * Max ages in seconds, links max age matches revalidation period of persisted links.
+   */
+  static final long STATS_MAX_AGE = 10;
+  static final long LINKS_MAX_AGE = TimeUnit.HOURS.toSeconds(1);
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    final Request request = chain.request();
+    final String rel = request.header(REL_HEADER);
+    if (rel == null) {
+      return chain.proceed(request);
+    }
+
+    final Request.Builder builder = request.newBuilder().removeHeader(REL_HEADER);
+    if ("state".equals(rel)) {
+      builder.removeHeader("If-None-Match").removeHeader("If-Modified-Since");
+    }
+    final Response response = chain.proceed(builder.build());
+    if (!response.isSuccessful()) {
+      return response;
+    }
+
+    switch (rel) {
+      case "state":
+        return withNoStore(response);
+      case "stats":
+        return withValidators(withCacheControl(response, "max-age=" + STATS_MAX_AGE));
+      case "logs":
+        return withValidators(withCacheControl(response, "no-cache"));
+      case "api":
+      case "doors":
+        return withValidators(withCacheControl(response, "max-age=" + LINKS_MAX_AGE));
+      default:
+        return response;
+    }
+  }
+
+  private static Response withCacheControl(Response response, String cacheControl) {
+    return response.newBuilder()
+        .header("Cache-Control", cacheControl)
+        .removeHeader("Pragma")
+        .removeHeader("Expires")
+        .build();
+  }
+
+  /**
+   * Server's max-age of the state tells when to poll again (see PollingScheduler), so it is
+   * kept and no-store is added to it.
+   */
+  private static Response withNoStore(Response response) {
+    final String cacheControl = response.header("Cache-Control");
+    if (cacheControl == null || cacheControl.trim().isEmpty()) {
+      return withCacheControl(response, "no-store");
+    }
+    if (response.cacheControl().noStore()) {
+      return response;
+    }
+    return withCacheControl(response, cacheControl + ", no-store");
+  }
+
+  private static Response withValidators(Response response) {
+    if (response.header("ETag") != null || response.header("Last-Modified") != null
+        || response.header("Date") == null) {
+      return response;
+    }
+    return response.newBuilder()
+        .header("Last-Modified", response.header("Date"))
+        .build();
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data.api;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * Decodes CBOR responses with the Gson type adapters, see {@link CborReader}. Responses in
+ * other formats are passed to the next converter, so it has to be added before
+ * the JSON converter factory. CBOR is requested per call with {@link #ACCEPT} header.
+ */
+public class CborConverterFactory extends Converter.Factory {
+
+  public static final String ACCEPT = "Accept: application/cbor, application/json;q=0.9";
+
+  private final Gson gson;
+
+  public static CborConverterFactory create(Gson gson) {
+    return new CborConverterFactory(gson);
+  }
+
+  private CborConverterFactory(Gson gson) {
+    super();
+    this.gson = gson;
+  }
+
+  public static boolean isCbor(MediaType contentType) {
+    return contentType != null && "cbor".equals(contentType.subtype());
+  }
+
+  @Override
+  public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations,
+                                                          Retrofit retrofit) {
+    final Converter<ResponseBody, ?> next = retrofit.nextResponseBodyConverter(this, type, annotations);
+    final TypeAdapter<?> adapter = gson.getAdapter(TypeToken.get(type));
+    return body -> {
+      if (!isCbor(body.contentType())) {
+        return next.convert(body);
+      }
+
+      final CborReader reader = new CborReader(body.source());
+      try {
+        return adapter.read(reader);
+      }
+      finally {
+        reader.close();
+      }
+    };
+  }
+}
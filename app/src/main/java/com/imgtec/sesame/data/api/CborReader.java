@@ -0,0 +1,487 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data.api;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import okio.Buffer;
+import okio.BufferedSource;
+
+/**
+ * Reads CBOR (RFC 7049) document as if it was JSON, so the same Gson type adapters can decode
+ * both formats. Items are decoded straight from the source while they are consumed, nothing
+ * is buffered beyond the current string. Map keys are exposed as names, tags are ignored,
+ * byte strings are read as base64 strings.
+ */
+public class CborReader extends JsonReader {
+
+  private static final Reader UNREADABLE = new StringReader("");
+
+  private static final int MAJOR_UNSIGNED = 0;
+  private static final int MAJOR_NEGATIVE = 1;
+  private static final int MAJOR_BYTES = 2;
+  private static final int MAJOR_TEXT = 3;
+  private static final int MAJOR_ARRAY = 4;
+  private static final int MAJOR_MAP = 5;
+  private static final int MAJOR_TAG = 6;
+  private static final int MAJOR_SIMPLE = 7;
+
+  private static final int FALSE = 20;
+  private static final int TRUE = 21;
+  private static final int NULL = 22;
+  private static final int UNDEFINED = 23;
+  private static final int HALF = 25;
+  private static final int FLOAT = 26;
+  private static final int DOUBLE = 27;
+  private static final int BREAK = 0xff;
+  private static final long INDEFINITE = -1;
+
+  private final BufferedSource source;
+  private final List<Container> stack = new ArrayList<>();
+  private int head = -1;
+  private long argument;
+  private boolean consumed;
+
+  public CborReader(BufferedSource source) {
+    super(UNREADABLE);
+    this.source = source;
+  }
+
+  @Override
+  public void beginArray() throws IOException {
+    expect(JsonToken.BEGIN_ARRAY);
+    stack.add(new Container(false, argument));
+    head = -1;
+  }
+
+  @Override
+  public void endArray() throws IOException {
+    expect(JsonToken.END_ARRAY);
+    endContainer();
+  }
+
+  @Override
+  public void beginObject() throws IOException {
+    expect(JsonToken.BEGIN_OBJECT);
+    stack.add(new Container(true, argument));
+    head = -1;
+  }
+
+  @Override
+  public void endObject() throws IOException {
+    expect(JsonToken.END_OBJECT);
+    endContainer();
+  }
+
+  @Override
+  public boolean hasNext() throws IOException {
+    final JsonToken token = peek();
+    return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY
+        && token != JsonToken.END_DOCUMENT;
+  }
+
+  @Override
+  public JsonToken peek() throws IOException {
+    final Container container = top();
+    if (container == null && consumed) {
+      return JsonToken.END_DOCUMENT;
+    }
+    if (container != null) {
+      if (container.remaining == 0) {
+        return container.map ? JsonToken.END_OBJECT : JsonToken.END_ARRAY;
+      }
+      readHead();
+      if (head == BREAK) {
+        if (container.remaining != INDEFINITE) {
+          throw new IOException("Unexpected break" + position());
+        }
+        return container.map ? JsonToken.END_OBJECT : JsonToken.END_ARRAY;
+      }
+      if (container.map && container.expectName) {
+        return JsonToken.NAME;
+      }
+    }
+
+    readHead();
+    switch (head >>> 5) {
+      case MAJOR_UNSIGNED:
+      case MAJOR_NEGATIVE:
+        return JsonToken.NUMBER;
+      case MAJOR_BYTES:
+      case MAJOR_TEXT:
+        return JsonToken.STRING;
+      case MAJOR_ARRAY:
+        return JsonToken.BEGIN_ARRAY;
+      case MAJOR_MAP:
+        return JsonToken.BEGIN_OBJECT;
+      default:
+        switch (head & 0x1f) {
+          case FALSE:
+          case TRUE:
+            return JsonToken.BOOLEAN;
+          case NULL:
+          case UNDEFINED:
+            return JsonToken.NULL;
+          case HALF:
+          case FLOAT:
+          case DOUBLE:
+            return JsonToken.NUMBER;
+          default:
+            throw new IOException("Unsupported simple value " + (head & 0x1f) + position());
+        }
+    }
+  }
+
+  @Override
+  public String nextName() throws IOException {
+    expect(JsonToken.NAME);
+    final String name = readScalarAsString();
+    top().expectName = false;
+    return name;
+  }
+
+  @Override
+  public String nextString() throws IOException {
+    final JsonToken token = peek();
+    if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+      throw new IllegalStateException("Expected STRING but was " + token + position());
+    }
+    final String value = readScalarAsString();
+    endValue();
+    return value;
+  }
+
+  @Override
+  public boolean nextBoolean() throws IOException {
+    expect(JsonToken.BOOLEAN);
+    final boolean value = (head & 0x1f) == TRUE;
+    head = -1;
+    endValue();
+    return value;
+  }
+
+  @Override
+  public void nextNull() throws IOException {
+    expect(JsonToken.NULL);
+    head = -1;
+    endValue();
+  }
+
+  @Override
+  public double nextDouble() throws IOException {
+    final double value = readNumber();
+    endValue();
+    return value;
+  }
+
+  @Override
+  public long nextLong() throws IOException {
+    final double value = readNumber();
+    final long result = (long) value;
+    if (result != value) {
+      throw new NumberFormatException("Expected a long but was " + value + position());
+    }
+    endValue();
+    return result;
+  }
+
+  @Override
+  public int nextInt() throws IOException {
+    final double value = readNumber();
+    final int result = (int) value;
+    if (result != value) {
+      throw new NumberFormatException("Expected an int but was " + value + position());
+    }
+    endValue();
+    return result;
+  }
+
+  @Override
+  public void skipValue() throws IOException {
+    int depth = 0;
+    do {
+      switch (peek()) {
+        case BEGIN_ARRAY:
+          beginArray();
+          depth++;
+          break;
+        case BEGIN_OBJECT:
+          beginObject();
+          depth++;
+          break;
+        case END_ARRAY:
+          endArray();
+          depth--;
+          break;
+        case END_OBJECT:
+          endObject();
+          depth--;
+          break;
+        case NAME:
+          nextName();
+          break;
+        case STRING:
+          skipString();
+          endValue();
+          break;
+        case NUMBER:
+          nextDouble();
+          break;
+        case BOOLEAN:
+          nextBoolean();
+          break;
+        case NULL:
+          nextNull();
+          break;
+        case END_DOCUMENT:
+          return;
+      }
+    } while (depth > 0);
+  }
+
+  @Override
+  public void close() throws IOException {
+    stack.clear();
+    source.close();
+  }
+
+  @Override
+  public String getPath() {
+    return "$";
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + position();
+  }
+
+  private Container top() {
+    return stack.isEmpty() ? null : stack.get(stack.size() - 1);
+  }
+
+  private void expect(JsonToken expected) throws IOException {
+    final JsonToken token = peek();
+    if (token != expected) {
+      throw new IllegalStateException("Expected " + expected + " but was " + token + position());
+    }
+  }
+
+  private void endContainer() throws IOException {
+    final Container container = stack.remove(stack.size() - 1);
+    if (container.remaining == INDEFINITE) {
+      head = -1;
+    }
+    endValue();
+  }
+
+  /**
+   * Called when value has been consumed, updates enclosing container.
+   */
+  private void endValue() {
+    final Container container = top();
+    if (container == null) {
+      consumed = true;
+      return;
+    }
+    if (container.remaining > 0) {
+      container.remaining--;
+    }
+    container.expectName = true;
+  }
+
+  /**
+   * Reads initial byte and argument of the next item, unless it has already been read.
+   * Tags are skipped.
+   */
+  private void readHead() throws IOException {
+    while (head < 0) {
+      final int initial = source.readByte() & 0xff;
+      final int info = initial & 0x1f;
+      if (info < 24) {
+        argument = info;
+      }
+      else if (info == 24) {
+        argument = source.readByte() & 0xff;
+      }
+      else if (info == 25) {
+        argument = source.readShort() & 0xffff;
+      }
+      else if (info == 26) {
+        argument = source.readInt() & 0xffffffffL;
+      }
+      else if (info == 27) {
+        argument = source.readLong();
+      }
+      else if (info == 31 && initial >>> 5 != MAJOR_UNSIGNED && initial >>> 5 != MAJOR_NEGATIVE
+          && initial >>> 5 != MAJOR_TAG) {
+        argument = INDEFINITE;
+      }
+      else {
+        throw new IOException("Malformed item 0x" + Integer.toHexString(initial) + position());
+      }
+
+      if (initial >>> 5 != MAJOR_TAG) {
+        head = initial;
+      }
+    }
+  }
+
+  private double readNumber() throws IOException {
+    final JsonToken token = peek();
+    if (token == JsonToken.STRING && head >>> 5 == MAJOR_TEXT) {
+      return Double.parseDouble(readScalarAsString());
+    }
+    if (token != JsonToken.NUMBER) {
+      throw new IllegalStateException("Expected NUMBER but was " + token + position());
+    }
+    return decodeNumber();
+  }
+
+  private double decodeNumber() throws IOException {
+    final double value;
+    switch (head >>> 5) {
+      case MAJOR_UNSIGNED:
+        value = argument >= 0 ? argument : unsigned(argument);
+        break;
+      case MAJOR_NEGATIVE:
+        value = -1 - (argument >= 0 ? argument : unsigned(argument));
+        break;
+      case MAJOR_SIMPLE:
+        switch (head & 0x1f) {
+          case HALF:
+            value = half((int) argument);
+            break;
+          case FLOAT:
+            value = Float.intBitsToFloat((int) argument);
+            break;
+          case DOUBLE:
+            value = Double.longBitsToDouble(argument);
+            break;
+          default:
+            throw new IOException("Expected number but was simple value " + (head & 0x1f) + position());
+        }
+        break;
+      default:
+        throw new IOException("Expected number but was major type " + (head >>> 5) + position());
+    }
+    head = -1;
+    return value;
+  }
+
+  private String readScalarAsString() throws IOException {
+    switch (head >>> 5) {
+      case MAJOR_TEXT:
+        return readChunks(MAJOR_TEXT).readUtf8();
+      case MAJOR_BYTES:
+        return readChunks(MAJOR_BYTES).readByteString().base64();
+      default:
+        final double number = decodeNumber();
+        return number == (long) number ? Long.toString((long) number) : Double.toString(number);
+    }
+  }
+
+  private Buffer readChunks(int major) throws IOException {
+    final Buffer buffer = new Buffer();
+    if (argument != INDEFINITE) {
+      source.readFully(buffer, argument);
+      head = -1;
+      return buffer;
+    }
+
+    head = -1;
+    while (true) {
+      readHead();
+      if (head == BREAK) {
+        head = -1;
+        return buffer;
+      }
+      if (head >>> 5 != major || argument == INDEFINITE) {
+        throw new IOException("Malformed string chunk" + position());
+      }
+      source.readFully(buffer, argument);
+      head = -1;
+    }
+  }
+
+  private void skipString() throws IOException {
+    if (argument != INDEFINITE) {
+      source.skip(argument);
+      head = -1;
+      return;
+    }
+    readChunks(head >>> 5);
+  }
+
+  private String position() {
+    return " at depth " + stack.size();
+  }
+
+  private static double unsigned(long value) {
+    return (double) (value >>> 1) * 2.0 + (value & 1);
+  }
+
+  private static double half(int bits) {
+    final int exponent = (bits >> 10) & 0x1f;
+    final int mantissa = bits & 0x3ff;
+    final double value;
+    if (exponent == 0) {
+      value = mantissa * Math.pow(2, -24);
+    }
+    else if (exponent == 31) {
+      value = mantissa == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+    }
+    else {
+      value = (1 + mantissa / 1024.0) * Math.pow(2, exponent - 15);
+    }
+    return (bits & 0x8000) != 0 ? -value : value;
+  }
+
+  private static class Container {
+
+    final boolean map;
+    long remaining;
+    boolean expectName;
+
+    Container(boolean map, long size) {
+      this.map = map;
+      this.remaining = size;
+      this.expectName = map;
+    }
+  }
+}
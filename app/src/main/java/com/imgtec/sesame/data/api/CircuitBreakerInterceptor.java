@@ -0,0 +1,286 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Per host circuit breaker. After {@link #FAILURE_THRESHOLD} consecutive failures (I/O errors
+ * or 5xx responses) requests to the host fail at once with {@link CircuitOpenException}. When
+ * the circuit has been open for a while, a single trial request is let through, its outcome
+ * closes the circuit or opens it for twice as long. Requests tagged with {@link #UNTRACKED}
+ * bypass the circuit, their outcome says nothing about the api (e.g. connection probes).
+ * <p>
+ * Canceled calls are not counted either. Interceptor chain of this okhttp version does not
+ * expose the call, so calls have to be made by {@link CallFactory} to be recognized as canceled.
+ */
+public class CircuitBreakerInterceptor implements Interceptor {
+
+  static final int FAILURE_THRESHOLD = 5;
+  static final long OPEN_DURATION = TimeUnit.SECONDS.toMillis(10);
+  static final long MAX_OPEN_DURATION = TimeUnit.MINUTES.toMillis(2);
+
+  /**
+   * Tag of requests which are neither suspended nor counted by the circuit.
+   */
+  public static final Object UNTRACKED = new Object();
+
+  public static class CircuitOpenException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    CircuitOpenException(String host, long retryIn) {
+      super("Requests to " + host + " suspended for " + retryIn + "ms after repeated failures");
+    }
+  }
+
+  private final Logger logger = LoggerFactory.getLogger(getClass().getSimpleName());
+  private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    final Request request = chain.request();
+    if (request.tag() == UNTRACKED) {
+      return chain.proceed(request);
+    }
+
+    final String host = request.url().host() + ":" + request.url().port();
+    Circuit circuit = circuits.get(host);
+    if (circuit == null) {
+      circuits.putIfAbsent(host, new Circuit());
+      circuit = circuits.get(host);
+    }
+
+    final Permit permit = circuit.acquire(System.currentTimeMillis());
+    if (permit.retryIn > 0) {
+      throw new CircuitOpenException(host, permit.retryIn);
+    }
+
+    final Response response;
+    try {
+      response = chain.proceed(request);
+    }
+    catch (IOException e) {
+      // canceled call says nothing about the host
+      if (request.tag() instanceof CallTag && ((CallTag) request.tag()).canceled) {
+        circuit.release(permit);
+      }
+      else if (circuit.onFailure(permit, System.currentTimeMillis())) {
+        logger.warn("Circuit of {} opened: {}", host, e.getMessage());
+      }
+      throw e;
+    }
+
+    if (response.code() >= 500) {
+      if (circuit.onFailure(permit, System.currentTimeMillis())) {
+        logger.warn("Circuit of {} opened: {}", host, response.code());
+      }
+    }
+    else {
+      circuit.onSuccess();
+    }
+    return response;
+  }
+
+  /**
+   * Outcome of {@link Circuit#acquire}, trial request is the only holder of its permit.
+   */
+  static final class Permit {
+
+    static final Permit CLOSED = new Permit(0);
+
+    /**
+     * Milliseconds until circuit half-opens, 0 if request may proceed.
+     */
+    final long retryIn;
+
+    Permit(long retryIn) {
+      this.retryIn = retryIn;
+    }
+  }
+
+  static final class Circuit {
+
+    private int failures;
+    private long openUntil;
+    private long openDuration = OPEN_DURATION;
+    private Permit trial;
+
+    /**
+     * @param now current time in milliseconds
+     * @return permit to pass to {@link #onFailure} or {@link #release}, request may proceed
+     * if its {@link Permit#retryIn} is 0
+     */
+    synchronized Permit acquire(long now) {
+      if (failures < FAILURE_THRESHOLD) {
+        return Permit.CLOSED;
+      }
+      if (now < openUntil) {
+        return new Permit(openUntil - now);
+      }
+      if (trial != null) {
+        return new Permit(openDuration);
+      }
+      trial = new Permit(0);
+      return trial;
+    }
+
+    /**
+     * Request of given permit ended without outcome, another trial may go if it was the trial.
+     */
+    synchronized void release(Permit permit) {
+      if (permit == trial) {
+        trial = null;
+      }
+    }
+
+    synchronized void onSuccess() {
+      failures = 0;
+      openDuration = OPEN_DURATION;
+      trial = null;
+    }
+
+    /**
+     * @param now current time in milliseconds
+     * @return true if circuit has just been opened
+     */
+    synchronized boolean onFailure(Permit permit, long now) {
+      if (permit == trial) {
+        trial = null;
+        openDuration = Math.min(openDuration * 2, MAX_OPEN_DURATION);
+        openUntil = now + openDuration;
+        return true;
+      }
+      if (failures >= FAILURE_THRESHOLD) {
+        // request started before circuit opened, the trial is not affected
+        return false;
+      }
+      if (++failures == FAILURE_THRESHOLD) {
+        openUntil = now + openDuration;
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Tag of calls made by {@link CallFactory}.
+   */
+  static final class CallTag {
+
+    volatile boolean canceled;
+  }
+
+  /**
+   * Makes calls whose cancellation is seen by the interceptor. Requests are tagged, those
+   * already tagged (e.g. {@link #UNTRACKED}) are passed as they are.
+   */
+  public static class CallFactory implements Call.Factory {
+
+    private final Call.Factory delegate;
+
+    public CallFactory(Call.Factory delegate) {
+      super();
+      this.delegate = delegate;
+    }
+
+    @Override
+    public Call newCall(Request request) {
+      if (request.tag() != request) {
+        return delegate.newCall(request);
+      }
+      final CallTag tag = new CallTag();
+      return new TaggedCall(delegate.newCall(request.newBuilder().tag(tag).build()), tag);
+    }
+
+    private final class TaggedCall implements Call {
+
+      private final Call call;
+      private final CallTag tag;
+
+      TaggedCall(Call call, CallTag tag) {
+        this.call = call;
+        this.tag = tag;
+      }
+
+      @Override
+      public Request request() {
+        return call.request();
+      }
+
+      @Override
+      public Response execute() throws IOException {
+        return call.execute();
+      }
+
+      @Override
+      public void enqueue(Callback responseCallback) {
+        call.enqueue(responseCallback);
+      }
+
+      @Override
+      public void cancel() {
+        tag.canceled = true;
+        call.cancel();
+      }
+
+      @Override
+      public boolean isExecuted() {
+        return call.isExecuted();
+      }
+
+      @Override
+      public boolean isCanceled() {
+        return call.isCanceled();
+      }
+
+      @Override
+      public Call clone() {
+        final CallTag cloned = new CallTag();
+        return new TaggedCall(delegate.newCall(call.request().newBuilder().tag(cloned).build()),
+            cloned);
+      }
+    }
+  }
+}
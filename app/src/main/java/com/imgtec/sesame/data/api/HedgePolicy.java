@@ -0,0 +1,191 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data.api;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import okhttp3.Request;
+
+/**
+ * Decides when {@link HedgedCall} sends its second request. Latencies of recent responses are
+ * kept per path, the hedge goes out once a call has been waiting longer than the configured
+ * percentile of them. Every call earns {@code budget} of a hedge, so hedges never exceed that
+ * fraction of calls, bursts are limited to {@link #MAX_TOKENS}.
+ */
+public class HedgePolicy {
+
+  static final int WINDOW = 64;
+  static final int MIN_SAMPLES = 16;
+  static final long MIN_DELAY = 50;
+  static final double MAX_TOKENS = 10;
+
+  private final double percentile;
+  private final double budget;
+  private final Map<String, Latencies> latencies = new HashMap<>();
+  private double tokens;
+  private final Metrics metrics = new Metrics();
+
+  /**
+   * @param percentile of observed latencies after which call is hedged, e.g. 0.95
+   * @param budget max fraction of calls which can be hedged, 0 disables hedging
+   */
+  public HedgePolicy(double percentile, double budget) {
+    super();
+    this.percentile = percentile;
+    this.budget = budget;
+  }
+
+  /**
+   * Counts a new call.
+   *
+   * @return milliseconds after which the call should be hedged, or -1 if it should not
+   */
+  public synchronized long hedgeDelay(Request request) {
+    metrics.calls++;
+    if (budget <= 0) {
+      return -1;
+    }
+    tokens = Math.min(MAX_TOKENS, tokens + budget);
+    final Latencies observed = latencies.get(request.url().encodedPath());
+    if (observed == null || observed.count < MIN_SAMPLES) {
+      return -1;
+    }
+    return Math.max(MIN_DELAY, observed.percentile(percentile));
+  }
+
+  /**
+   * @return true if hedge may be sent, false if the budget is spent
+   */
+  public synchronized boolean acquireHedge() {
+    if (tokens < 1) {
+      metrics.denied++;
+      return false;
+    }
+    tokens -= 1;
+    metrics.hedged++;
+    return true;
+  }
+
+  /**
+   * @param millis latency of the call, from sending the primary request to the winning
+   *               response, so hedge wins don't make observed latencies look shorter
+   * @param hedgeWon true if the response came from the hedge
+   */
+  public synchronized void onResponse(Request request, long millis, boolean hedgeWon) {
+    final String path = request.url().encodedPath();
+    Latencies observed = latencies.get(path);
+    if (observed == null) {
+      observed = new Latencies();
+      latencies.put(path, observed);
+    }
+    observed.add(millis);
+    if (hedgeWon) {
+      metrics.hedgeWins++;
+    }
+  }
+
+  public synchronized Metrics getMetrics() {
+    return new Metrics(metrics);
+  }
+
+  /**
+   * Ring of recent latencies.
+   */
+  static final class Latencies {
+
+    private final long[] samples = new long[WINDOW];
+    private int count;
+    private int next;
+
+    void add(long millis) {
+      samples[next] = millis;
+      next = (next + 1) % WINDOW;
+      count = Math.min(count + 1, WINDOW);
+    }
+
+    long percentile(double p) {
+      final long[] sorted = Arrays.copyOf(samples, count);
+      Arrays.sort(sorted);
+      return sorted[Math.max(0, Math.min(count - 1, (int) Math.ceil(p * count) - 1))];
+    }
+  }
+
+  /**
+   * Hedging statistics.
+   */
+  public static class Metrics {
+
+    private long calls;
+    private long hedged;
+    private long hedgeWins;
+    private long denied;
+
+    Metrics() {}
+
+    Metrics(Metrics other) {
+      this.calls = other.calls;
+      this.hedged = other.hedged;
+      this.hedgeWins = other.hedgeWins;
+      this.denied = other.denied;
+    }
+
+    public long getCallCount() {
+      return calls;
+    }
+
+    public long getHedgedCount() {
+      return hedged;
+    }
+
+    /**
+     * @return how many times hedge answered first
+     */
+    public long getHedgeWinCount() {
+      return hedgeWins;
+    }
+
+    /**
+     * @return how many hedges were not sent because of the budget
+     */
+    public long getDeniedCount() {
+      return denied;
+    }
+
+    @Override
+    public String toString() {
+      return "Hedging{calls=" + calls + ", hedged=" + hedged + ", wins=" + hedgeWins
+          + ", denied=" + denied + "}";
+    }
+  }
+}
@@ -0,0 +1,202 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Call which sends a second, identical request if the first one has not been answered within
+ * delay given by {@link HedgePolicy}. The first response wins and the other request is canceled,
+ * failure is reported only when no request is left. Must wrap idempotent requests only.
+ * Synchronous {@link #execute()} is never hedged.
+ */
+public class HedgedCall<T> implements Call<T> {
+
+  private final Logger logger = LoggerFactory.getLogger(getClass().getSimpleName());
+  private final Call<T> primary;
+  private final HedgePolicy policy;
+  private final ScheduledExecutorService executor;
+  private volatile Call<T> hedge;
+  private volatile ScheduledFuture<?> timer;
+  private volatile boolean canceled;
+  private volatile long start;
+  private boolean done;
+  private int pending;
+
+  public HedgedCall(Call<T> primary, HedgePolicy policy, ScheduledExecutorService executor) {
+    super();
+    this.primary = primary;
+    this.policy = policy;
+    this.executor = executor;
+  }
+
+  @Override
+  public Response<T> execute() throws IOException {
+    policy.hedgeDelay(request());
+    final long start = System.nanoTime();
+    final Response<T> response = primary.execute();
+    policy.onResponse(request(), elapsedMillis(start), false);
+    return response;
+  }
+
+  @Override
+  public void enqueue(final Callback<T> callback) {
+    final long delay = policy.hedgeDelay(request());
+    synchronized (this) {
+      pending = 1;
+    }
+    start = System.nanoTime();
+    primary.enqueue(new Attempt(callback, false));
+    if (delay < 0) {
+      return;
+    }
+
+    try {
+      timer = executor.schedule(() -> sendHedge(callback, delay), delay, TimeUnit.MILLISECONDS);
+    }
+    catch (RejectedExecutionException e) {
+      logger.debug("Hedge of {} not scheduled", request().url());
+    }
+  }
+
+  private void sendHedge(Callback<T> callback, long delay) {
+    final Call<T> call;
+    synchronized (this) {
+      if (done || canceled || !policy.acquireHedge()) {
+        return;
+      }
+      call = primary.clone();
+      hedge = call;
+      pending++;
+    }
+    logger.debug("No response from {} in {}ms, hedging", request().url(), delay);
+    call.enqueue(new Attempt(callback, true));
+  }
+
+  @Override
+  public boolean isExecuted() {
+    return primary.isExecuted();
+  }
+
+  @Override
+  public void cancel() {
+    canceled = true;
+    cancelTimer();
+    primary.cancel();
+    final Call<T> call = hedge;
+    if (call != null) {
+      call.cancel();
+    }
+  }
+
+  @Override
+  public boolean isCanceled() {
+    return canceled || primary.isCanceled();
+  }
+
+  @Override
+  public Call<T> clone() {
+    return new HedgedCall<>(primary.clone(), policy, executor);
+  }
+
+  @Override
+  public Request request() {
+    return primary.request();
+  }
+
+  private void cancelTimer() {
+    final ScheduledFuture<?> future = timer;
+    if (future != null) {
+      future.cancel(false);
+    }
+  }
+
+  private static long elapsedMillis(long start) {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+  }
+
+  private class Attempt implements Callback<T> {
+
+    private final Callback<T> callback;
+    private final boolean isHedge;
+
+    Attempt(Callback<T> callback, boolean isHedge) {
+      this.callback = callback;
+      this.isHedge = isHedge;
+    }
+
+    @Override
+    public void onResponse(Call<T> call, Response<T> response) {
+      synchronized (HedgedCall.this) {
+        if (done) {
+          if (response.errorBody() != null) {
+            response.errorBody().close();
+          }
+          return;
+        }
+        done = true;
+      }
+      cancelTimer();
+      final Call<T> other = isHedge ? primary : hedge;
+      if (other != null) {
+        other.cancel();
+      }
+      // latency seen by the caller, hedge winning counts from the primary request too
+      policy.onResponse(request(), elapsedMillis(start), isHedge);
+      callback.onResponse(HedgedCall.this, response);
+    }
+
+    @Override
+    public void onFailure(Call<T> call, Throwable t) {
+      synchronized (HedgedCall.this) {
+        if (done || --pending > 0) {
+          return;
+        }
+        done = true;
+      }
+      cancelTimer();
+      callback.onFailure(HedgedCall.this, t);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data.api;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.concurrent.ScheduledExecutorService;
+
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Retrofit;
+
+/**
+ * Wraps calls of api methods annotated with {@link Hedged} in {@link HedgedCall}.
+ */
+public final class HedgingCallAdapterFactory extends CallAdapter.Factory {
+
+  private final HedgePolicy policy;
+  private final ScheduledExecutorService executor;
+
+  public static HedgingCallAdapterFactory create(HedgePolicy policy,
+                                                 ScheduledExecutorService executor) {
+    return new HedgingCallAdapterFactory(policy, executor);
+  }
+
+  private HedgingCallAdapterFactory(HedgePolicy policy, ScheduledExecutorService executor) {
+    super();
+    this.policy = policy;
+    this.executor = executor;
+  }
+
+  @Override
+  public CallAdapter<?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+    if (getRawType(returnType) != Call.class || !isHedged(annotations)) {
+      return null;
+    }
+
+    final CallAdapter<?> next = retrofit.nextCallAdapter(this, returnType, annotations);
+    return new CallAdapter<Call<?>>() {
+      @Override
+      public Type responseType() {
+        return next.responseType();
+      }
+
+      @SuppressWarnings("unchecked")
+      @Override
+      public <R> Call<?> adapt(Call<R> call) {
+        return new HedgedCall<>((Call<R>) next.adapt(call), policy, executor);
+      }
+    };
+  }
+
+  private static boolean isHedged(Annotation[] annotations) {
+    for (Annotation annotation : annotations) {
+      if (annotation instanceof Hedged) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data.api;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.imgtec.sesame.data.api.pojo.Link;
+import com.imgtec.sesame.data.api.pojo.Log;
+import com.imgtec.sesame.data.api.pojo.Logs;
+import com.imgtec.sesame.data.api.pojo.PageInfo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * Decodes logs page while it is being downloaded. Items are passed to the consumer in small
+ * batches, so neither the raw body nor the whole list is kept in memory. Decoding stops when
+ * item or byte limit is reached, the rest of the page is dropped.
+ */
+public class LogsDecoder {
+
+  public interface Consumer {
+    void onLogs(List<Log> logs);
+  }
+
+  static final int BATCH_SIZE = 10;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final Type LINKS_TYPE = new TypeToken<List<Link>>() {}.getType();
+
+  private final Logger logger = LoggerFactory.getLogger(getClass().getSimpleName());
+  private final Gson gson;
+  private final int maxItems;
+  private final long maxBytes;
+
+  public LogsDecoder(Gson gson, int maxItems, long maxBytes) {
+    super();
+    this.gson = gson;
+    this.maxItems = maxItems;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Source is read on the calling thread and closed when done.
+   * @param contentType JSON is assumed unless it is CBOR
+   * @return page info and links of the page, items are delivered to consumer only
+   */
+  public Logs decode(BufferedSource source, MediaType contentType, Consumer consumer)
+      throws IOException {
+    final CountingSource counting = new CountingSource(source);
+    final JsonReader reader = CborConverterFactory.isCbor(contentType)
+        ? new CborReader(Okio.buffer(counting))
+        : new JsonReader(new InputStreamReader(Okio.buffer(counting).inputStream(), UTF_8));
+
+    final Logs logs = new Logs();
+    try {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        final String name = reader.nextName();
+        if ("items".equals(name)) {
+          if (!readItems(reader, counting, consumer)) {
+            return logs;
+          }
+        }
+        else if ("PageInfo".equals(name)) {
+          logs.setPageInfo(gson.<PageInfo>fromJson(reader, PageInfo.class));
+        }
+        else if ("links".equals(name)) {
+          logs.setLinks(gson.<List<Link>>fromJson(reader, LINKS_TYPE));
+        }
+        else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+      return logs;
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * @return false if limit has been reached and decoding should stop
+   */
+  private boolean readItems(JsonReader reader, CountingSource counting, Consumer consumer)
+      throws IOException {
+
+    int count = 0;
+    List<Log> batch = new ArrayList<>(BATCH_SIZE);
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (count >= maxItems || counting.bytesRead > maxBytes) {
+        logger.warn("Logs page truncated after {} items, {} bytes", count, counting.bytesRead);
+        flush(batch, consumer);
+        return false;
+      }
+
+      batch.add(gson.<Log>fromJson(reader, Log.class));
+      count++;
+      if (batch.size() == BATCH_SIZE) {
+        flush(batch, consumer);
+        batch = new ArrayList<>(BATCH_SIZE);
+      }
+    }
+    reader.endArray();
+    flush(batch, consumer);
+    return true;
+  }
+
+  private static void flush(List<Log> batch, Consumer consumer) {
+    if (!batch.isEmpty()) {
+      consumer.onLogs(batch);
+    }
+  }
+
+  private static class CountingSource extends ForwardingSource {
+
+    long bytesRead;
+
+    CountingSource(BufferedSource delegate) {
+      super(delegate);
+    }
+
+    @Override
+    public long read(Buffer sink, long byteCount) throws IOException {
+      final long read = super.read(sink, byteCount);
+      if (read > 0) {
+        bytesRead += read;
+      }
+      return read;
+    }
+  }
+}
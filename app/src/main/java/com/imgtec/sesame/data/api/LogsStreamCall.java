@@ -0,0 +1,138 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data.api;
+
+import com.imgtec.sesame.data.api.pojo.Log;
+import com.imgtec.sesame.data.api.pojo.Logs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Adapts streaming logs call, successful body is decoded with {@link LogsDecoder} on the
+ * thread which received the response. Decoded items are handed to the consumer batch by batch
+ * and are also set on the returned page, so it can be kept in memory.
+ */
+public class LogsStreamCall implements Call<Logs> {
+
+  private final Call<ResponseBody> delegate;
+  private final LogsDecoder decoder;
+  private final LogsDecoder.Consumer consumer;
+
+  public LogsStreamCall(Call<ResponseBody> delegate, LogsDecoder decoder,
+                        LogsDecoder.Consumer consumer) {
+    super();
+    this.delegate = delegate;
+    this.decoder = decoder;
+    this.consumer = consumer;
+  }
+
+  @Override
+  public Response<Logs> execute() throws IOException {
+    return decode(delegate.execute());
+  }
+
+  @Override
+  public void enqueue(final Callback<Logs> callback) {
+    delegate.enqueue(new Callback<ResponseBody>() {
+      @Override
+      public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
+        final Response<Logs> logs;
+        try {
+          logs = decode(response);
+        }
+        catch (IOException e) {
+          callback.onFailure(LogsStreamCall.this, e);
+          return;
+        }
+        callback.onResponse(LogsStreamCall.this, logs);
+      }
+
+      @Override
+      public void onFailure(Call<ResponseBody> call, Throwable t) {
+        callback.onFailure(LogsStreamCall.this, t);
+      }
+    });
+  }
+
+  @Override
+  public boolean isExecuted() {
+    return delegate.isExecuted();
+  }
+
+  @Override
+  public void cancel() {
+    delegate.cancel();
+  }
+
+  @Override
+  public boolean isCanceled() {
+    return delegate.isCanceled();
+  }
+
+  @Override
+  public Call<Logs> clone() {
+    return new LogsStreamCall(delegate.clone(), decoder, consumer);
+  }
+
+  @Override
+  public Request request() {
+    return delegate.request();
+  }
+
+  private Response<Logs> decode(Response<ResponseBody> response) throws IOException {
+    if (!response.isSuccessful()) {
+      return Response.error(response.errorBody(), response.raw());
+    }
+
+    final ResponseBody body = response.body();
+    final List<Log> items = new ArrayList<>();
+    try {
+      final Logs logs = decoder.decode(body.source(), body.contentType(), batch -> {
+        items.addAll(batch);
+        consumer.onLogs(batch);
+      });
+      logs.setLogs(items);
+      return Response.success(logs, response.raw());
+    }
+    finally {
+      body.close();
+    }
+  }
+}
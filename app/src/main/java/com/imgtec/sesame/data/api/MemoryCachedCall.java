@@ -0,0 +1,147 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data.api;
+
+import java.io.IOException;
+
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Call answered from {@link ResponseMemoryCache} when it holds a fresh response, otherwise
+ * executed by the delegate and its successful response stored. Responses served from memory
+ * have neither network nor cache response. Successful call changing the resource (PUT, DELETE,
+ * ...) evicts whole cache, as it may change other resources too (e.g. statistics and logs).
+ */
+public class MemoryCachedCall<T> implements Call<T> {
+
+  private final Call<T> delegate;
+  private final ResponseMemoryCache cache;
+  private volatile boolean executed;
+
+  public MemoryCachedCall(Call<T> delegate, ResponseMemoryCache cache) {
+    super();
+    this.delegate = delegate;
+    this.cache = cache;
+  }
+
+  @Override
+  public Response<T> execute() throws IOException {
+    final Response<T> cached = fromCache();
+    if (cached != null) {
+      return cached;
+    }
+    return store(delegate.execute());
+  }
+
+  @Override
+  public void enqueue(final Callback<T> callback) {
+    final Response<T> cached = fromCache();
+    if (cached != null) {
+      callback.onResponse(this, cached);
+      return;
+    }
+
+    delegate.enqueue(new Callback<T>() {
+      @Override
+      public void onResponse(Call<T> call, Response<T> response) {
+        callback.onResponse(MemoryCachedCall.this, store(response));
+      }
+
+      @Override
+      public void onFailure(Call<T> call, Throwable t) {
+        callback.onFailure(MemoryCachedCall.this, t);
+      }
+    });
+  }
+
+  @Override
+  public boolean isExecuted() {
+    return executed || delegate.isExecuted();
+  }
+
+  @Override
+  public void cancel() {
+    delegate.cancel();
+  }
+
+  @Override
+  public boolean isCanceled() {
+    return delegate.isCanceled();
+  }
+
+  @Override
+  public Call<T> clone() {
+    return new MemoryCachedCall<>(delegate.clone(), cache);
+  }
+
+  @Override
+  public Request request() {
+    return delegate.request();
+  }
+
+  @SuppressWarnings("unchecked")
+  private Response<T> fromCache() {
+    final Request request = request();
+    if (!isCacheable(request)) {
+      return null;
+    }
+    final ResponseMemoryCache.Entry entry = cache.get(request.url().toString());
+    if (entry == null) {
+      return null;
+    }
+
+    executed = true;
+    return Response.success((T) entry.getBody(), entry.getRaw().newBuilder().request(request).build());
+  }
+
+  private Response<T> store(Response<T> response) {
+    final Request request = request();
+    if (response.isSuccessful() && isCacheable(request)) {
+      cache.put(request.url().toString(), response.raw(), response.body());
+    }
+    else if (response.isSuccessful() && !isSafe(request)) {
+      cache.evictAll();
+    }
+    return response;
+  }
+
+  private static boolean isSafe(Request request) {
+    return "GET".equals(request.method()) || "HEAD".equals(request.method());
+  }
+
+  private static boolean isCacheable(Request request) {
+    return "GET".equals(request.method()) && !request.cacheControl().noCache();
+  }
+}
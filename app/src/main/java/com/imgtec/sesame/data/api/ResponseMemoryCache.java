@@ -0,0 +1,236 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data.api;
+
+import android.support.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.CacheControl;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * In-memory cache of decoded responses, keyed by request url (resolved href and query).
+ * It sits in front of the disk cache of {@link okhttp3.OkHttpClient} and follows the same
+ * freshness rules, so a response is kept only as long as its Cache-Control allows to reuse it
+ * without revalidation. Eviction is bounded by estimated size of the entries.
+ * <p>
+ * Bodies are kept as JSON trees and every hit gets its own copy, so a caller modifying its
+ * body can't change what others get.
+ */
+public class ResponseMemoryCache {
+
+  /**
+   * Rough cost of the entry, response headers and the decoded object graph.
+   */
+  static final int ENTRY_OVERHEAD = 512;
+  /**
+   * Size assumed for bodies of unknown length, e.g. chunked responses.
+   */
+  static final int UNKNOWN_BODY_SIZE = 16 * 1024;
+
+  private final Logger logger = LoggerFactory.getLogger(getClass().getSimpleName());
+  private final Gson gson;
+  private final int maxBytes;
+  /**
+   * Access ordered, least recently used entries are evicted first.
+   */
+  private final LinkedHashMap<String, Stored> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private int bytes;
+  private final AtomicInteger hits = new AtomicInteger();
+  private final AtomicInteger misses = new AtomicInteger();
+
+  public ResponseMemoryCache(Gson gson, int maxBytes) {
+    super();
+    this.gson = gson;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * @return fresh entry stored for the url or null, its body is a copy owned by the caller
+   */
+  @Nullable
+  public Entry get(String url) {
+    final Stored entry;
+    synchronized (this) {
+      entry = entries.get(url);
+      if (entry == null || entry.expiresAt <= System.currentTimeMillis()) {
+        if (entry != null) {
+          remove(url);
+        }
+        misses.incrementAndGet();
+        return null;
+      }
+    }
+    hits.incrementAndGet();
+    // copied outside of the lock
+    return new Entry(entry.raw, gson.fromJson(entry.body, entry.type));
+  }
+
+  /**
+   * Stores decoded body of successful response, if its Cache-Control allows to reuse it.
+   */
+  public void put(String url, Response raw, Object body) {
+    final long expiresAt = expiresAt(raw);
+    if (body == null || expiresAt <= System.currentTimeMillis()) {
+      remove(url);
+      return;
+    }
+
+    final Response stripped = raw.newBuilder()
+        .networkResponse(null)
+        .cacheResponse(null)
+        .priorResponse(null)
+        .build();
+    final Stored entry = new Stored(stripped, gson.toJsonTree(body), body.getClass(), expiresAt,
+        estimateSize(raw));
+    synchronized (this) {
+      remove(url);
+      entries.put(url, entry);
+      bytes += entry.size;
+      trim();
+    }
+    logger.debug("Stored {} ({} bytes), {}", url, entry.size, this);
+  }
+
+  public synchronized void remove(String url) {
+    final Stored removed = entries.remove(url);
+    if (removed != null) {
+      bytes -= removed.size;
+    }
+  }
+
+  public synchronized void evictAll() {
+    entries.clear();
+    bytes = 0;
+  }
+
+  /**
+   * @return estimated size of stored entries in bytes
+   */
+  public synchronized int size() {
+    return bytes;
+  }
+
+  private void trim() {
+    final Iterator<Stored> it = entries.values().iterator();
+    while (bytes > maxBytes && it.hasNext()) {
+      bytes -= it.next().size;
+      it.remove();
+    }
+  }
+
+  public int hitCount() {
+    return hits.get();
+  }
+
+  public int missCount() {
+    return misses.get();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("ResponseMemoryCache[size=%d/%d, hits=%d, misses=%d]",
+        size(), maxBytes, hits.get(), misses.get());
+  }
+
+  private static long expiresAt(Response raw) {
+    final CacheControl cacheControl = raw.cacheControl();
+    if (cacheControl.noStore() || cacheControl.noCache() || cacheControl.maxAgeSeconds() <= 0) {
+      return 0;
+    }
+    return raw.receivedResponseAtMillis()
+        + TimeUnit.SECONDS.toMillis(cacheControl.maxAgeSeconds());
+  }
+
+  /**
+   * Wire size of the body (two bytes per byte) is close enough to the footprint of the tree,
+   * it is known without encoding the body again.
+   */
+  private static int estimateSize(Response raw) {
+    final ResponseBody body = raw.body();
+    final long length = body != null ? body.contentLength() : -1;
+    if (length < 0) {
+      return ENTRY_OVERHEAD + UNKNOWN_BODY_SIZE;
+    }
+    return (int) Math.min(Integer.MAX_VALUE, ENTRY_OVERHEAD + 2 * length);
+  }
+
+  private static final class Stored {
+
+    final Response raw;
+    final JsonElement body;
+    final Class<?> type;
+    final long expiresAt;
+    final int size;
+
+    Stored(Response raw, JsonElement body, Class<?> type, long expiresAt, int size) {
+      this.raw = raw;
+      this.body = body;
+      this.type = type;
+      this.expiresAt = expiresAt;
+      this.size = size;
+    }
+  }
+
+  public static final class Entry {
+
+    private final Response raw;
+    private final Object body;
+
+    Entry(Response raw, Object body) {
+      this.raw = raw;
+      this.body = body;
+    }
+
+    /**
+     * @return response the body came with, without network and disk cache responses
+     */
+    public Response getRaw() {
+      return raw;
+    }
+
+    public Object getBody() {
+      return body;
+    }
+  }
+}
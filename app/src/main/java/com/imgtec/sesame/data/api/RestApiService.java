@@ -38,11 +38,15 @@ import com.imgtec.sesame.data.api.pojo.DoorsEntrypoint;
 import com.imgtec.sesame.data.api.pojo.DoorsStatistics;
 import com.imgtec.sesame.data.api.pojo.Logs;
 
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.http.DELETE;
 import retrofit2.http.GET;
+import retrofit2.http.Header;
+import retrofit2.http.Headers;
 import retrofit2.http.PUT;
 import retrofit2.http.Query;
+import retrofit2.http.Streaming;
 import retrofit2.http.Url;
 
 /**
@@ -50,23 +54,33 @@ import retrofit2.http.Url;
  */
 public interface RestApiService {
 
+  /**
+   * @param cacheControl e.g. no-cache to revalidate cached links, null to use them while fresh
+   */
+  @Headers(CachePolicyInterceptor.API)
   @GET
-  Call<Api> api(@Url String url);
+  Call<Api> api(@Url String url, @Header("Cache-Control") String cacheControl);
 
+  @Headers(CachePolicyInterceptor.DOORS)
   @GET
-  Call<DoorsEntrypoint> entrypoint(@Url String url);
+  Call<DoorsEntrypoint> entrypoint(@Url String url, @Header("Cache-Control") String cacheControl);
 
+  @Hedged
+  @Headers({CborConverterFactory.ACCEPT, CachePolicyInterceptor.STATE})
   @GET
   Call<DoorsState> state(@Url String url);
 
+  /**
+   * @param idempotencyKey identifies the command, replayed command carries the same key
+   */
   @PUT
-  Call<Void> operate(@Url String url);
+  Call<Void> operate(@Url String url, @Header("Idempotency-Key") String idempotencyKey);
 
   @PUT
-  Call<DoorsAction> open(@Url String url);
+  Call<DoorsAction> open(@Url String url, @Header("Idempotency-Key") String idempotencyKey);
 
   @PUT
-  Call<DoorsAction> close(@Url String url);
+  Call<DoorsAction> close(@Url String url, @Header("Idempotency-Key") String idempotencyKey);
 
   @PUT
   Call<Void> resetOpenCounter(@Url String url);
@@ -74,12 +88,23 @@ public interface RestApiService {
   @PUT
   Call<Void> resetCloseCounter(@Url String url);
 
+  @Hedged
+  @Headers({CborConverterFactory.ACCEPT, CachePolicyInterceptor.STATS})
   @GET
   Call<DoorsStatistics> statistics(@Url String url);
 
   @DELETE
   Call<Void> deleteStatistics(@Url String url);
 
+  @Headers({CborConverterFactory.ACCEPT, CachePolicyInterceptor.LOGS})
   @GET
   Call<Logs> logs(@Url String url, @Query("pageSize") Integer pageSize, @Query("startIndex") Integer startIndex);
+
+  /**
+   * Body is not buffered, see {@link LogsDecoder}.
+   */
+  @Streaming
+  @Headers({CborConverterFactory.ACCEPT, CachePolicyInterceptor.LOGS})
+  @GET
+  Call<ResponseBody> logsStream(@Url String url, @Query("pageSize") Integer pageSize, @Query("startIndex") Integer startIndex);
 }
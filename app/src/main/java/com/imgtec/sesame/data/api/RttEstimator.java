@@ -0,0 +1,186 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Network interceptor which estimates round trip time of each host the way TCP does
+ * (RFC 6298): smoothed RTT and its variation are updated with the time from sending a request
+ * to receiving response headers. Timeout of the host is SRTT + 4 * RTTVAR, doubled after
+ * every timed out request until a new sample arrives, and kept within
+ * [{@link #MIN_TIMEOUT}, {@link #MAX_TIMEOUT}].
+ */
+public class RttEstimator implements Interceptor {
+
+  static final long MIN_TIMEOUT = TimeUnit.SECONDS.toMillis(2);
+  static final long MAX_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+  /**
+   * Timeout isn't derived from fewer samples.
+   */
+  static final int MIN_SAMPLES = 3;
+
+  private final Logger logger = LoggerFactory.getLogger(getClass().getSimpleName());
+  private final Map<String, Estimate> estimates = new ConcurrentHashMap<>();
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    final Request request = chain.request();
+    final Estimate estimate = estimateOf(request.url());
+    final long start = System.nanoTime();
+    try {
+      final Response response = chain.proceed(request);
+      estimate.onSample(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+      return response;
+    }
+    catch (SocketTimeoutException e) {
+      estimate.onTimeout();
+      logger.debug("{} timed out, backing off: {}", request.url().host(), estimate);
+      throw e;
+    }
+  }
+
+  /**
+   * @return timeout in milliseconds for requests to the host of given url, or -1 if there
+   * are not enough samples yet
+   */
+  public long getTimeout(HttpUrl url) {
+    final Estimate estimate = estimates.get(key(url));
+    return estimate != null ? estimate.getTimeout() : -1;
+  }
+
+  /**
+   * @param url of the host
+   * @return copy of current estimate, null if nothing has been sent to the host
+   */
+  public Estimate getEstimate(HttpUrl url) {
+    final Estimate estimate = estimates.get(key(url));
+    return estimate != null ? new Estimate(estimate) : null;
+  }
+
+  private Estimate estimateOf(HttpUrl url) {
+    final String key = key(url);
+    Estimate estimate = estimates.get(key);
+    if (estimate == null) {
+      estimates.putIfAbsent(key, new Estimate());
+      estimate = estimates.get(key);
+    }
+    return estimate;
+  }
+
+  private static String key(HttpUrl url) {
+    return url.host() + ":" + url.port();
+  }
+
+  /**
+   * Round trip time estimate of a host, all values in milliseconds.
+   */
+  public static final class Estimate {
+
+    private long srtt;
+    private long rttvar;
+    private int samples;
+    private int backoff;
+
+    Estimate() {}
+
+    Estimate(Estimate other) {
+      synchronized (other) {
+        this.srtt = other.srtt;
+        this.rttvar = other.rttvar;
+        this.samples = other.samples;
+        this.backoff = other.backoff;
+      }
+    }
+
+    synchronized void onSample(long rtt) {
+      if (samples == 0) {
+        srtt = rtt;
+        rttvar = rtt / 2;
+      }
+      else {
+        // alpha = 1/8, beta = 1/4
+        rttvar += (Math.abs(srtt - rtt) - rttvar) / 4;
+        srtt += (rtt - srtt) / 8;
+      }
+      samples++;
+      backoff = 0;
+    }
+
+    synchronized void onTimeout() {
+      if (backoff < 4) {
+        backoff++;
+      }
+    }
+
+    public synchronized long getSmoothedRtt() {
+      return srtt;
+    }
+
+    public synchronized long getRttVariation() {
+      return rttvar;
+    }
+
+    public synchronized int getSampleCount() {
+      return samples;
+    }
+
+    /**
+     * @return timeout derived from the estimate, -1 if there are not enough samples
+     */
+    public synchronized long getTimeout() {
+      if (samples < MIN_SAMPLES) {
+        return -1;
+      }
+      final long timeout = (srtt + 4 * rttvar) << backoff;
+      return Math.min(MAX_TIMEOUT, Math.max(MIN_TIMEOUT, timeout));
+    }
+
+    @Override
+    public synchronized String toString() {
+      return "Rtt{srtt=" + srtt + "ms, rttvar=" + rttvar + "ms, samples=" + samples
+          + ", backoff=" + backoff + ", timeout=" + getTimeout() + "ms}";
+    }
+  }
+}
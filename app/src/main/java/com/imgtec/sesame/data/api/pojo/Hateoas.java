@@ -35,6 +35,7 @@ import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -48,7 +49,11 @@ public class Hateoas {
   @Expose
   private List<Link> links = new ArrayList<Link>();
 
-  private Map<String, Link> linksMap = new HashMap<>();
+  /**
+   * Index of {@link #links} by rel. Never mutated once published, so resources shared between
+   * threads (e.g. by the memory cache) can be queried concurrently.
+   */
+  private transient volatile Map<String, Link> linksMap;
 
   public List<Link> getLinks() {
     return links;
@@ -56,17 +61,27 @@ public class Hateoas {
 
   public void setLinks(List<Link> links) {
     this.links = links;
+    this.linksMap = index(links);
   }
 
   public Link getLinkByRel(String rel) {
-    if (links.isEmpty()) {
-      return null;
+    Map<String, Link> map = linksMap;
+    if (map == null) {
+      // links were filled in without the setter, e.g. by reflective deserialization
+      map = index(links);
+      linksMap = map;
     }
-    if (links.isEmpty() == false && linksMap.isEmpty()) {
-      for (Link link : links) {
-        linksMap.put(link.getRel(), link);
-      }
+    return map.get(rel);
+  }
+
+  private static Map<String, Link> index(List<Link> links) {
+    if (links == null || links.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    Map<String, Link> map = new HashMap<>(links.size() * 2);
+    for (Link link : links) {
+      map.put(link.getRel(), link);
     }
-    return linksMap.get(rel);
+    return Collections.unmodifiableMap(map);
   }
 }
@@ -0,0 +1,375 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data.api.pojo;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Type adapters of the api pojos. Fields are read and written through accessors, so Gson
+ * doesn't have to inspect classes with reflection on first use, and numbers are decoded
+ * without boxing where pojo allows it. Field names follow {@code @SerializedName} of the pojos
+ * and have to be kept in sync with them.
+ */
+public class PojoTypeAdapterFactory implements TypeAdapterFactory {
+
+  private static final TypeAdapter<Link> LINK = new ObjectAdapter<Link>() {
+    @Override
+    Link create() {
+      return new Link();
+    }
+
+    @Override
+    boolean readField(JsonReader in, String name, Link value) throws IOException {
+      switch (name) {
+        case "rel": value.setRel(in.nextString()); return true;
+        case "href": value.setHref(in.nextString()); return true;
+        case "type": value.setType(in.nextString()); return true;
+        default: return false;
+      }
+    }
+
+    @Override
+    void writeFields(JsonWriter out, Link value) throws IOException {
+      out.name("rel").value(value.getRel());
+      out.name("href").value(value.getHref());
+      out.name("type").value(value.getType());
+    }
+  }.nullSafe();
+
+  private static final TypeAdapter<Api> API = new HateoasAdapter<Api>() {
+    @Override
+    Api create() {
+      return new Api();
+    }
+  }.nullSafe();
+
+  private static final TypeAdapter<DoorsEntrypoint> ENTRYPOINT = new HateoasAdapter<DoorsEntrypoint>() {
+    @Override
+    DoorsEntrypoint create() {
+      return new DoorsEntrypoint();
+    }
+  }.nullSafe();
+
+  private static final TypeAdapter<Hateoas> HATEOAS = new HateoasAdapter<Hateoas>() {
+    @Override
+    Hateoas create() {
+      return new Hateoas();
+    }
+  }.nullSafe();
+
+  private static final TypeAdapter<DoorsState> STATE = new ObjectAdapter<DoorsState>() {
+    @Override
+    DoorsState create() {
+      return new DoorsState();
+    }
+
+    @Override
+    boolean readField(JsonReader in, String name, DoorsState value) throws IOException {
+      if ("state".equals(name)) {
+        value.setState(in.nextString());
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    void writeFields(JsonWriter out, DoorsState value) throws IOException {
+      out.name("state").value(value.getState());
+    }
+  }.nullSafe();
+
+  private static final TypeAdapter<DoorsAction> ACTION = new HateoasAdapter<DoorsAction>() {
+    @Override
+    DoorsAction create() {
+      return new DoorsAction();
+    }
+
+    @Override
+    boolean readOwnField(JsonReader in, String name, DoorsAction value) throws IOException {
+      if ("count".equals(name)) {
+        value.setCount(in.nextInt());
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    void writeOwnFields(JsonWriter out, DoorsAction value) throws IOException {
+      out.name("count").value(value.getCount());
+    }
+  }.nullSafe();
+
+  private static final TypeAdapter<StatsEntry> STATS_ENTRY = new ObjectAdapter<StatsEntry>() {
+    @Override
+    StatsEntry create() {
+      return new StatsEntry();
+    }
+
+    @Override
+    boolean readField(JsonReader in, String name, StatsEntry value) throws IOException {
+      switch (name) {
+        case "min": value.setMin(in.nextDouble()); return true;
+        case "max": value.setMax(in.nextDouble()); return true;
+        case "avg": value.setAvg(in.nextDouble()); return true;
+        default: return false;
+      }
+    }
+
+    @Override
+    void writeFields(JsonWriter out, StatsEntry value) throws IOException {
+      out.name("min").value(value.getMin());
+      out.name("max").value(value.getMax());
+      out.name("avg").value(value.getAvg());
+    }
+  }.nullSafe();
+
+  private static final TypeAdapter<DoorsStatistics> STATISTICS = new HateoasAdapter<DoorsStatistics>() {
+    @Override
+    DoorsStatistics create() {
+      return new DoorsStatistics();
+    }
+
+    @Override
+    boolean readOwnField(JsonReader in, String name, DoorsStatistics value) throws IOException {
+      switch (name) {
+        case "since": value.setSince(in.nextString()); return true;
+        case "opening": value.setOpening(STATS_ENTRY.read(in)); return true;
+        case "closing": value.setClosing(STATS_ENTRY.read(in)); return true;
+        default: return false;
+      }
+    }
+
+    @Override
+    void writeOwnFields(JsonWriter out, DoorsStatistics value) throws IOException {
+      out.name("since").value(value.getSince());
+      out.name("opening");
+      STATS_ENTRY.write(out, value.getOpening());
+      out.name("closing");
+      STATS_ENTRY.write(out, value.getClosing());
+    }
+  }.nullSafe();
+
+  private static final TypeAdapter<Log> LOG = new ObjectAdapter<Log>() {
+    @Override
+    Log create() {
+      return new Log();
+    }
+
+    @Override
+    boolean readField(JsonReader in, String name, Log value) throws IOException {
+      switch (name) {
+        case "date": value.setDate(in.nextString()); return true;
+        case "action": value.setAction(in.nextString()); return true;
+        default: return false;
+      }
+    }
+
+    @Override
+    void writeFields(JsonWriter out, Log value) throws IOException {
+      out.name("date").value(value.getDate());
+      out.name("action").value(value.getAction());
+    }
+  }.nullSafe();
+
+  private static final TypeAdapter<PageInfo> PAGE_INFO = new ObjectAdapter<PageInfo>() {
+    @Override
+    PageInfo create() {
+      return new PageInfo();
+    }
+
+    @Override
+    boolean readField(JsonReader in, String name, PageInfo value) throws IOException {
+      switch (name) {
+        case "TotalCount": value.setTotalCount(in.nextInt()); return true;
+        case "ItemsCount": value.setItemsCount(in.nextInt()); return true;
+        case "StartIndex": value.setStartIndex(in.nextInt()); return true;
+        default: return false;
+      }
+    }
+
+    @Override
+    void writeFields(JsonWriter out, PageInfo value) throws IOException {
+      out.name("TotalCount").value(value.getTotalCount());
+      out.name("ItemsCount").value(value.getItemsCount());
+      out.name("StartIndex").value(value.getStartIndex());
+    }
+  }.nullSafe();
+
+  private static final TypeAdapter<Logs> LOGS = new HateoasAdapter<Logs>() {
+    @Override
+    Logs create() {
+      return new Logs();
+    }
+
+    @Override
+    boolean readOwnField(JsonReader in, String name, Logs value) throws IOException {
+      switch (name) {
+        case "PageInfo": value.setPageInfo(PAGE_INFO.read(in)); return true;
+        case "items": value.setLogs(readList(in, LOG)); return true;
+        default: return false;
+      }
+    }
+
+    @Override
+    void writeOwnFields(JsonWriter out, Logs value) throws IOException {
+      out.name("PageInfo");
+      PAGE_INFO.write(out, value.getPageInfo());
+      out.name("items");
+      writeList(out, value.getLogs(), LOG);
+    }
+  }.nullSafe();
+
+  private static final Map<Class<?>, TypeAdapter<?>> ADAPTERS = new HashMap<>();
+
+  static {
+    ADAPTERS.put(Link.class, LINK);
+    ADAPTERS.put(Hateoas.class, HATEOAS);
+    ADAPTERS.put(Api.class, API);
+    ADAPTERS.put(DoorsEntrypoint.class, ENTRYPOINT);
+    ADAPTERS.put(DoorsState.class, STATE);
+    ADAPTERS.put(DoorsAction.class, ACTION);
+    ADAPTERS.put(StatsEntry.class, STATS_ENTRY);
+    ADAPTERS.put(DoorsStatistics.class, STATISTICS);
+    ADAPTERS.put(Log.class, LOG);
+    ADAPTERS.put(PageInfo.class, PAGE_INFO);
+    ADAPTERS.put(Logs.class, LOGS);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+    return (TypeAdapter<T>) ADAPTERS.get(type.getRawType());
+  }
+
+  private static <T> List<T> readList(JsonReader in, TypeAdapter<T> adapter) throws IOException {
+    final List<T> list = new ArrayList<>();
+    in.beginArray();
+    while (in.hasNext()) {
+      list.add(adapter.read(in));
+    }
+    in.endArray();
+    return list;
+  }
+
+  private static <T> void writeList(JsonWriter out, List<T> list, TypeAdapter<T> adapter)
+      throws IOException {
+    if (list == null) {
+      out.nullValue();
+      return;
+    }
+    out.beginArray();
+    for (T item : list) {
+      adapter.write(out, item);
+    }
+    out.endArray();
+  }
+
+  /**
+   * Reads JSON object field by field, unknown fields and nulls are skipped so defaults of
+   * the pojo are kept.
+   */
+  private static abstract class ObjectAdapter<T> extends TypeAdapter<T> {
+
+    abstract T create();
+
+    /**
+     * @return false if field is not known
+     */
+    abstract boolean readField(JsonReader in, String name, T value) throws IOException;
+
+    abstract void writeFields(JsonWriter out, T value) throws IOException;
+
+    @Override
+    public void write(JsonWriter out, T value) throws IOException {
+      out.beginObject();
+      writeFields(out, value);
+      out.endObject();
+    }
+
+    @Override
+    public T read(JsonReader in) throws IOException {
+      final T value = create();
+      in.beginObject();
+      while (in.hasNext()) {
+        final String name = in.nextName();
+        if (in.peek() == JsonToken.NULL) {
+          in.nextNull();
+        }
+        else if (!readField(in, name, value)) {
+          in.skipValue();
+        }
+      }
+      in.endObject();
+      return value;
+    }
+  }
+
+  /**
+   * Handles 'links' of all {@link Hateoas} resources.
+   */
+  private static abstract class HateoasAdapter<T extends Hateoas> extends ObjectAdapter<T> {
+
+    boolean readOwnField(JsonReader in, String name, T value) throws IOException {
+      return false;
+    }
+
+    void writeOwnFields(JsonWriter out, T value) throws IOException {}
+
+    @Override
+    final boolean readField(JsonReader in, String name, T value) throws IOException {
+      if ("links".equals(name)) {
+        value.setLinks(readList(in, LINK));
+        return true;
+      }
+      return readOwnField(in, name, value);
+    }
+
+    @Override
+    final void writeFields(JsonWriter out, T value) throws IOException {
+      writeOwnFields(out, value);
+      out.name("links");
+      writeList(out, value.getLinks(), LINK);
+    }
+  }
+}
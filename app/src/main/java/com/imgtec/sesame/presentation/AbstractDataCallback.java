@@ -76,8 +76,24 @@ public abstract class AbstractDataCallback<F extends BaseFragment, S,T>
     });
   }
 
+  /**
+   * Runs action on the main thread, if fragment is still added.
+   */
+  protected void post(final FragmentAction<F> action) {
+    mainHandler.post(() -> {
+      F f = fragment.get();
+      if (f != null && f.isAdded()) {
+        action.run(f);
+      }
+    });
+  }
+
   protected abstract void onSuccess(F fragment, S service, T result);
 
   protected abstract void onFailure(F fragment, S service, Throwable t);
+
+  protected interface FragmentAction<F> {
+    void run(F fragment);
+  }
 }
 
@@ -36,6 +36,7 @@ import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
 import android.view.View;
 
+import com.imgtec.sesame.data.RequestScope;
 import com.imgtec.sesame.data.api.pojo.DoorsStatistics;
 
 import butterknife.ButterKnife;
@@ -45,12 +46,31 @@ public abstract class BaseFragment extends Fragment {
 
   protected Unbinder unbinder;
 
+  /**
+   * Requests issued on behalf of this fragment, canceled when fragment is paused or destroyed.
+   * Doors commands are not meant to be added, they should complete even if user leaves
+   * the screen.
+   */
+  protected final RequestScope requests = new RequestScope();
+
   @Override
   public void onViewCreated(View view, @Nullable Bundle savedInstanceState) {
     super.onViewCreated(view, savedInstanceState);
     unbinder = ButterKnife.bind(this, view);
   }
 
+  @Override
+  public void onPause() {
+    requests.cancelAll();
+    super.onPause();
+  }
+
+  @Override
+  public void onDestroy() {
+    requests.cancelAll();
+    super.onDestroy();
+  }
+
   @Override
   public void onDestroyView() {
     super.onDestroyView();
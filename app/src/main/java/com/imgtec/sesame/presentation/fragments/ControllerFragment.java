@@ -50,7 +50,9 @@ import android.widget.Toast;
 
 import com.imgtec.di.HasComponent;
 import com.imgtec.sesame.R;
+import com.imgtec.sesame.data.Cancellable;
 import com.imgtec.sesame.data.Configuration;
+import com.imgtec.sesame.data.ConnectionWarmer;
 import com.imgtec.sesame.data.DataService;
 import com.imgtec.sesame.data.Preferences;
 import com.imgtec.sesame.data.api.CredentialsWrapper;
@@ -81,6 +83,7 @@ public class ControllerFragment extends BaseFragment {
 
   @Inject Preferences preferences;
   @Inject DataService dataService;
+  @Inject ConnectionWarmer connectionWarmer;
   @Inject HostWrapper hostWrapper;
   @Inject CredentialsWrapper credentialsWrapper;
   @Inject @Named("Main") Handler mainHandler;
@@ -91,6 +94,8 @@ public class ControllerFragment extends BaseFragment {
   @BindView(R.id.status_message) TextView statusMessage;
 
   private AlertDialog configurationDialog;
+  private Cancellable keepWarm;
+  private Cancellable stateSubscription;
   boolean doorsInMove = true;
 
   public ControllerFragment() {
@@ -134,21 +139,40 @@ public class ControllerFragment extends BaseFragment {
 
   @Override
   public void onPause() {
-    dataService.stopPollingDoorState();
     networkHelper.removeNetworkStateListener(networkListener);
     super.onPause();
   }
 
   private void syncWithWebapp() {
     if (networkHelper.isOnline()) {
-      dataService.startPollingDoorState(new DoorsStateCallback(this, mainHandler));
+      // door commands are sent over the connection kept warm while the screen is visible
+      if (keepWarm == null || keepWarm.isCanceled()) {
+        keepWarm = connectionWarmer.keepWarm();
+        requests.add(keepWarm);
+      }
+      else {
+        connectionWarmer.warmUp();
+      }
+      if (stateSubscription == null || stateSubscription.isCanceled()) {
+        stateSubscription = dataService.subscribeDoorState(new DoorsStateCallback(this, mainHandler));
+        requests.add(stateSubscription);
+      }
     }
     else {
-      dataService.stopPollingDoorState();
+      if (keepWarm != null) {
+        keepWarm.cancel();
+      }
+      unsubscribeDoorState();
       updateOfflineState();
     }
   }
 
+  private void unsubscribeDoorState() {
+    if (stateSubscription != null) {
+      stateSubscription.cancel();
+    }
+  }
+
   private void updateOnlineState() {
     applyBgColor(operate, android.R.color.holo_green_light);
   }
@@ -332,5 +356,10 @@ public class ControllerFragment extends BaseFragment {
     }
   }
 
-  NetworkHelper.NetworkStateListener networkListener = (NetworkInfo.State state) -> syncWithWebapp();
+  NetworkHelper.NetworkStateListener networkListener = (NetworkInfo.State state) -> {
+    // connections of the previous network are gone, updates restart on the new one unless
+    // shared with another subscriber
+    unsubscribeDoorState();
+    syncWithWebapp();
+  };
 }
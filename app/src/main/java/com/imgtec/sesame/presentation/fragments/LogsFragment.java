@@ -47,6 +47,7 @@ import android.widget.Toast;
 import com.imgtec.di.HasComponent;
 import com.imgtec.sesame.R;
 import com.imgtec.sesame.data.DataService;
+import com.imgtec.sesame.data.LogsCallback;
 import com.imgtec.sesame.data.api.pojo.Log;
 import com.imgtec.sesame.data.api.pojo.Logs;
 import com.imgtec.sesame.presentation.AbstractDataCallback;
@@ -75,6 +76,7 @@ public class LogsFragment extends BaseFragment {
   UiHelper uiHelper;
 
   private LogsAdapter adapter;
+  private boolean showingSnapshot;
 
   public LogsFragment() {
     // Required empty public constructor
@@ -101,6 +103,11 @@ public class LogsFragment extends BaseFragment {
   public void onActivityCreated(@Nullable Bundle savedInstanceState) {
     super.onActivityCreated(savedInstanceState);
     setupAdapter();
+  }
+
+  @Override
+  public void onResume() {
+    super.onResume();
     requestLogs();
   }
 
@@ -126,23 +133,36 @@ public class LogsFragment extends BaseFragment {
   }
 
   private void requestLogs() {
-    dataService.requestLogs(new RequestLogsCallback(LogsFragment.this, mainHandler));
+    clear();
+    requests.add(dataService.requestLogs(new RequestLogsCallback(LogsFragment.this, mainHandler)));
   }
 
   /**
    *
    */
-  static class RequestLogsCallback extends AbstractDataCallback<LogsFragment,DataService, Logs> {
+  static class RequestLogsCallback extends AbstractDataCallback<LogsFragment,DataService, Logs>
+      implements LogsCallback {
 
 
     public RequestLogsCallback(LogsFragment fragment, Handler mainHandler) throws IllegalArgumentException {
       super(fragment, mainHandler);
     }
 
+    @Override
+    public void onSnapshot(DataService service, Logs snapshot, long age) {
+      post(fragment -> fragment.showSnapshot(snapshot.getLogs()));
+    }
+
+    @Override
+    public void onLogs(DataService service, List<Log> logs) {
+      post(fragment -> fragment.appendFresh(logs));
+    }
+
     @Override
     protected void onSuccess(LogsFragment fragment, DataService service, Logs result) {
-      if (result != null) {
-        fragment.load(result.getLogs());
+      // items have already been appended, unless the page is empty
+      if (fragment.showingSnapshot) {
+        fragment.clear();
       }
     }
 
@@ -152,12 +172,35 @@ public class LogsFragment extends BaseFragment {
     }
   }
 
-  private void load(List<Log> items) {
+  private void showSnapshot(List<Log> items) {
+    clear();
+    if (items != null) {
+      append(items);
+    }
+    showingSnapshot = true;
+  }
+
+  /**
+   * Snapshot is replaced with the first batch of fresh items.
+   */
+  private void appendFresh(List<Log> items) {
+    if (showingSnapshot) {
+      clear();
+    }
+    append(items);
+  }
+
+  private void clear() {
+    showingSnapshot = false;
     adapter.clear();
+    adapter.notifyDataSetChanged();
+  }
+
+  private void append(List<Log> items) {
+    final int start = adapter.getItemCount();
     for (Log l: items) {
       adapter.add(new LogsAdapter.LogItem(l));
     }
-    adapter.notifyDataSetChanged();
-
+    adapter.notifyItemRangeInserted(start, adapter.getItemCount() - start);
   }
 }
@@ -34,7 +34,7 @@ package com.imgtec.sesame.presentation.fragments;
 
 import android.os.Bundle;
 import android.os.Handler;
-import android.support.annotation.Nullable;
+import android.text.format.DateUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -44,6 +44,7 @@ import android.widget.Toast;
 import com.imgtec.di.HasComponent;
 import com.imgtec.sesame.R;
 import com.imgtec.sesame.data.DataService;
+import com.imgtec.sesame.data.SnapshotCallback;
 import com.imgtec.sesame.data.api.pojo.DoorsStatistics;
 import com.imgtec.sesame.data.api.pojo.StatsEntry;
 import com.imgtec.sesame.presentation.AbstractDataCallback;
@@ -90,8 +91,8 @@ public class StatisticsFragment extends BaseFragment {
   }
 
   @Override
-  public void onActivityCreated(@Nullable Bundle savedInstanceState) {
-    super.onActivityCreated(savedInstanceState);
+  public void onResume() {
+    super.onResume();
     requestStatistics();
   }
 
@@ -101,13 +102,19 @@ public class StatisticsFragment extends BaseFragment {
   }
 
   private void requestStatistics() {
-    dataService.requestStatistics(new StatisticsCallback(StatisticsFragment.this, mainHandler));
+    requests.add(dataService.requestStatistics(new StatisticsCallback(StatisticsFragment.this, mainHandler)));
   }
 
   private void showStatistics(DoorsStatistics statistics) {
     text.setText(format(statistics));
   }
 
+  private void showSnapshot(DoorsStatistics statistics, long age) {
+    final CharSequence savedAt = DateUtils.getRelativeTimeSpanString(
+        System.currentTimeMillis() - age, System.currentTimeMillis(), DateUtils.MINUTE_IN_MILLIS);
+    text.setText(format(statistics) + "\n" + getString(R.string.updating_snapshot, savedAt));
+  }
+
 
   @OnClick(R.id.reset_statistics)
   void onResetStatistics() {
@@ -133,17 +140,25 @@ public class StatisticsFragment extends BaseFragment {
   }
 
   private static String format(Double value) {
+    if (value == null) {
+      return "-";
+    }
     return java.text.NumberFormat.getNumberInstance().format(value);
   }
 
 
   static class StatisticsCallback extends AbstractDataCallback<StatisticsFragment,
-      DataService, DoorsStatistics> {
+      DataService, DoorsStatistics> implements SnapshotCallback<DoorsStatistics> {
 
     StatisticsCallback(StatisticsFragment fragment, Handler mainHandler) throws IllegalArgumentException {
       super(fragment, mainHandler);
     }
 
+    @Override
+    public void onSnapshot(DataService service, DoorsStatistics snapshot, long age) {
+      post(fragment -> fragment.showSnapshot(snapshot, age));
+    }
+
     @Override
     protected void onSuccess(StatisticsFragment fragment, DataService service, DoorsStatistics result) {
       fragment.showStatistics(result);
@@ -37,6 +37,7 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
+import android.os.Handler;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,7 +46,9 @@ import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 
 /**
- *
+ * Tracks connectivity. Bursts of {@link ConnectivityManager#CONNECTIVITY_ACTION} broadcasts
+ * (e.g. Wi-Fi/LTE handover) are merged, listeners are notified once the network settles and only
+ * if it has changed. Listeners are notified on the main thread, in order of registration.
  */
 public class NetworkHelper {
 
@@ -54,20 +57,27 @@ public class NetworkHelper {
     void onNetworkStateChanged(NetworkInfo.State state);
   }
 
+  static final long SETTLE_DELAY = 1000;
+
   final Logger logger = LoggerFactory.getLogger(getClass());
   final Context context;
+  final Handler handler;
   final Set<NetworkStateListener> listeners = new CopyOnWriteArraySet<>();
+  final SettledNetwork network;
 
-  public NetworkHelper(Context context) {
+  public NetworkHelper(Context context, Handler handler) {
     super();
     this.context = context;
+    this.handler = handler;
+    this.network = new SettledNetwork(currentNetwork());
     registerNetworkStateReceiver(networkReceiver);
   }
 
+  /**
+   * @return connectivity as of the last settled change
+   */
   public boolean isOnline() {
-    ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
-    NetworkInfo netInfo = cm.getActiveNetworkInfo();
-    return (netInfo != null && netInfo.isConnected()); //null in air plain mode
+    return network.get() != null;
   }
 
   public void addNetworkStateListener(final NetworkStateListener l) {
@@ -88,14 +98,47 @@ public class NetworkHelper {
     context.unregisterReceiver(receiver);
   }
 
+  /**
+   * @return identity of active connected network or null if there is none (e.g. airplane mode)
+   */
+  final String currentNetwork() {
+    ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+    NetworkInfo netInfo = cm.getActiveNetworkInfo();
+    if (netInfo == null || !netInfo.isConnected()) {
+      return null;
+    }
+    return netInfo.getType() + ":" + netInfo.getSubtype() + ":" + netInfo.getExtraInfo();
+  }
+
+  final Runnable settle = new Runnable() {
+    @Override
+    public void run() {
+      final String previous = network.get();
+      final String current = currentNetwork();
+      if (!network.settle(current)) {
+        return;
+      }
+
+      logger.debug("Network changed: {} -> {}", previous, current);
+      final NetworkInfo.State state = current != null
+          ? NetworkInfo.State.CONNECTED
+          : NetworkInfo.State.DISCONNECTED;
+      for (NetworkStateListener l: listeners) {
+        l.onNetworkStateChanged(state);
+      }
+    }
+  };
+
   BroadcastReceiver networkReceiver = new BroadcastReceiver() {
     @Override
     public void onReceive(Context context, Intent intent) {
 
       final NetworkInfo info = intent.getExtras().getParcelable("networkInfo");
-      for (NetworkStateListener l: listeners) {
-        l.onNetworkStateChanged(info.getState());
+      if (info != null && !info.isConnected()) {
+        network.onDisconnected(info.getType());
       }
+      handler.removeCallbacks(settle);
+      handler.postDelayed(settle, SETTLE_DELAY);
     }
   };
 }
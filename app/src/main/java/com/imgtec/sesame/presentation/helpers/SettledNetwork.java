@@ -0,0 +1,76 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+
+package com.imgtec.sesame.presentation.helpers;
+
+/**
+ * Network as of the last settled change, see {@link NetworkHelper}. Networks are identified
+ * by strings starting with their type and a colon, null means there is none. Kept free of
+ * framework classes, so the settling rules can be tested on their own.
+ */
+final class SettledNetwork {
+
+  private volatile String network;
+  private boolean interrupted;
+
+  SettledNetwork(String network) {
+    this.network = network;
+  }
+
+  String get() {
+    return network;
+  }
+
+  /**
+   * Called for every broadcast of the burst which reports a disconnected network.
+   */
+  void onDisconnected(int type) {
+    final String active = network;
+    if (active != null && active.startsWith(type + ":")) {
+      interrupted = true;
+    }
+  }
+
+  /**
+   * Called once the burst is over.
+   * @return true if the network differs from the previous settled one, or if the connection
+   * was lost during the burst, which leaves dead sockets even on the same network
+   */
+  boolean settle(String current) {
+    final String previous = network;
+    final boolean changed = interrupted
+        || (current == null ? previous != null : !current.equals(previous));
+    interrupted = false;
+    network = current;
+    return changed;
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests queuing and persisting of commands in {@link CommandOutbox}.
+ */
+public class CommandOutboxTest {
+
+  private static final String HOST = "http://doors.local";
+
+  private final InMemoryPreferences prefs = new InMemoryPreferences();
+  private final Gson gson = new Gson();
+  private final CommandOutbox outbox = new CommandOutbox(prefs, gson);
+
+  @Test
+  public void keepsCommandsInOrderAcrossRestarts() {
+    outbox.append("1", HOST, "open");
+    outbox.append("2", HOST, "close");
+
+    final List<CommandOutbox.Command> pending = new CommandOutbox(prefs, gson).pending();
+
+    assertEquals(2, pending.size());
+    assertEquals("1", pending.get(0).getKey());
+    assertEquals("open", pending.get(0).getRel());
+    assertEquals(HOST, pending.get(0).getHost());
+    assertEquals("2", pending.get(1).getKey());
+  }
+
+  @Test
+  public void commandIsQueuedOnce() {
+    outbox.append("1", HOST, "open");
+    outbox.append("1", HOST, "open");
+
+    assertEquals(1, outbox.pending().size());
+  }
+
+  @Test
+  public void oldestCommandIsDroppedWhenFull() {
+    for (int i = 0; i <= CommandOutbox.MAX_COMMANDS; i++) {
+      outbox.append(String.valueOf(i), HOST, "open");
+    }
+
+    final List<CommandOutbox.Command> pending = outbox.pending();
+    assertEquals(CommandOutbox.MAX_COMMANDS, pending.size());
+    assertEquals("1", pending.get(0).getKey());
+  }
+
+  @Test
+  public void expiredCommandsAreDropped() {
+    final long queuedAt = System.currentTimeMillis() - CommandOutbox.TTL - 1000;
+    prefs.edit().putString(CommandOutbox.KEY, "[{\"key\":\"1\",\"host\":\"" + HOST
+        + "\",\"rel\":\"open\",\"queuedAt\":" + queuedAt + "}]").apply();
+
+    assertTrue(outbox.pending().isEmpty());
+    assertTrue(new CommandOutbox(prefs, gson).isEmpty());
+  }
+
+  @Test
+  public void removedCommandIsNotReplayed() {
+    outbox.append("1", HOST, "open");
+    outbox.append("2", HOST, "close");
+
+    outbox.remove(outbox.pending().get(0));
+
+    final List<CommandOutbox.Command> pending = new CommandOutbox(prefs, gson).pending();
+    assertEquals(1, pending.size());
+    assertEquals("2", pending.get(0).getKey());
+  }
+
+  @Test
+  public void clearDropsCommandsOfHost() {
+    outbox.append("1", HOST, "open");
+    outbox.append("2", "http://other.local", "close");
+    outbox.append("3", HOST, "close");
+
+    outbox.clear(HOST);
+
+    final List<CommandOutbox.Command> pending = new CommandOutbox(prefs, gson).pending();
+    assertEquals(1, pending.size());
+    assertEquals("2", pending.get(0).getKey());
+  }
+
+  @Test
+  public void commandWithoutHostIsNotQueued() {
+    outbox.append("1", "", "open");
+
+    assertTrue(outbox.isEmpty());
+  }
+
+  @Test
+  public void toggleIsNotQueued() {
+    outbox.append("1", HOST, "operate");
+
+    assertTrue(outbox.isEmpty());
+  }
+
+  @Test
+  public void onlyRequestsWhichNeverReachedServerAreUnsent() {
+    assertTrue(CommandOutbox.isUnsent(new ConnectException("Failed to connect")));
+    assertTrue(CommandOutbox.isUnsent(new UnknownHostException("doors.local")));
+
+    assertFalse(CommandOutbox.isUnsent(new SocketTimeoutException("timeout")));
+    assertFalse(CommandOutbox.isUnsent(new DeadlineExceededException(Deadline.after(1000))));
+    assertFalse(CommandOutbox.isUnsent(new IOException("unexpected end of stream")));
+  }
+
+  @Test
+  public void corruptedOutboxIsDropped() {
+    prefs.edit().putString(CommandOutbox.KEY, "{\"key\":").apply();
+
+    assertTrue(outbox.isEmpty());
+    assertFalse(prefs.contains(CommandOutbox.KEY));
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+
+package com.imgtec.sesame.data;
+
+import com.imgtec.sesame.data.api.HostWrapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link ConnectionWarmer} against a local server.
+ */
+public class ConnectionWarmerTest {
+
+  private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+  private final OkHttpClient client = new OkHttpClient();
+  private MockWebServer server;
+  private HostWrapper hostWrapper;
+  private ConnectionWarmer warmer;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockWebServer();
+    server.start();
+    hostWrapper = new HostWrapper(null);
+    hostWrapper.setHost(server.url("/api").toString());
+    warmer = new ConnectionWarmer(client, hostWrapper, executor);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+    server.shutdown();
+  }
+
+  @Test
+  public void commandReusesWarmConnection() throws Exception {
+    server.enqueue(new MockResponse());
+    server.enqueue(new MockResponse());
+
+    warmer.warmUp();
+    final RecordedRequest probe = server.takeRequest(5, TimeUnit.SECONDS);
+    assertEquals("HEAD", probe.getMethod());
+    awaitIdleConnection();
+
+    final Response response = client.newCall(new Request.Builder()
+        .url(server.url("/doors/open"))
+        .put(RequestBody.create(null, new byte[0]))
+        .build()).execute();
+    response.close();
+
+    assertEquals(1, server.takeRequest(5, TimeUnit.SECONDS).getSequenceNumber());
+  }
+
+  @Test
+  public void nothingIsSentWithoutHost() throws Exception {
+    hostWrapper.setHost(null);
+
+    warmer.warmUp();
+
+    assertNull(server.takeRequest(200, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void evictsIdleConnections() throws Exception {
+    server.enqueue(new MockResponse());
+    warmer.warmUp();
+    server.takeRequest(5, TimeUnit.SECONDS);
+    awaitIdleConnection();
+
+    warmer.evictConnections();
+
+    assertEquals(0, client.connectionPool().idleConnectionCount());
+  }
+
+  @Test
+  public void keepsWarmUntilCanceled() throws Exception {
+    server.enqueue(new MockResponse());
+
+    final Cancellable handle = warmer.keepWarm();
+    assertEquals("HEAD", server.takeRequest(5, TimeUnit.SECONDS).getMethod());
+    handle.cancel();
+
+    assertTrue(handle.isCanceled());
+  }
+
+  private void awaitIdleConnection() throws InterruptedException {
+    final long until = System.currentTimeMillis() + 5000;
+    while (client.connectionPool().idleConnectionCount() == 0
+        && System.currentTimeMillis() < until) {
+      Thread.sleep(10);
+    }
+    assertEquals(1, client.connectionPool().idleConnectionCount());
+  }
+}
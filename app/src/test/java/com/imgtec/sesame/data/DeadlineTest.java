@@ -0,0 +1,86 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link Deadline} arithmetic.
+ */
+public class DeadlineTest {
+
+  @Test
+  public void remainingIsBoundedByBudget() {
+    final Deadline deadline = Deadline.after(10000);
+
+    assertEquals(10000, deadline.getBudget());
+    assertTrue(deadline.remaining() <= 10000);
+    assertTrue(deadline.remaining() > 9000);
+    assertFalse(deadline.isExpired());
+  }
+
+  @Test
+  public void remainingStopsAtZero() throws Exception {
+    final Deadline deadline = Deadline.after(20);
+
+    Thread.sleep(50);
+
+    assertEquals(0, deadline.remaining());
+    assertTrue(deadline.isExpired());
+  }
+
+  @Test
+  public void zeroBudgetIsExpiredAtOnce() {
+    assertTrue(Deadline.after(0).isExpired());
+  }
+
+  @Test
+  public void comparesExpiryOfDeadlines() {
+    final Deadline sooner = Deadline.after(1000);
+    final Deadline later = Deadline.after(5000);
+
+    assertTrue(later.isAfter(sooner));
+    assertFalse(sooner.isAfter(later));
+    assertFalse(sooner.isAfter(sooner));
+  }
+
+  @Test
+  public void exceptionReportsBudget() {
+    final DeadlineExceededException e = new DeadlineExceededException(Deadline.after(1500));
+
+    assertEquals("Operation did not complete within 1500ms", e.getMessage());
+  }
+}
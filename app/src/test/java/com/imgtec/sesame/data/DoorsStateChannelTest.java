@@ -0,0 +1,165 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data;
+
+import com.google.gson.Gson;
+import com.imgtec.sesame.data.api.pojo.DoorsState;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link DoorsStateChannel} against local server.
+ */
+public class DoorsStateChannelTest {
+
+  private MockWebServer server;
+  private DoorsStateChannel channel;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockWebServer();
+    server.start();
+    channel = new DoorsStateChannel(new OkHttpClient(), new Gson());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    channel.close();
+    server.shutdown();
+  }
+
+  @Test
+  public void deliversPushedStates() throws Exception {
+    server.enqueue(new MockResponse().withWebSocketUpgrade(new ServerListener() {
+      @Override
+      public void onOpen(WebSocket webSocket, Response response) {
+        webSocket.send("{\"state\":\"unknown\"}");
+        webSocket.send("not a state");
+        webSocket.send("{\"state\":\"opened\"}");
+      }
+    }));
+
+    RecordingListener listener = new RecordingListener(2);
+    channel.open(server.url("/doors/state/stream").toString(), listener);
+
+    assertTrue(listener.await());
+    assertEquals(2, listener.states.size());
+    assertEquals("unknown", listener.states.get(0).getState());
+    assertEquals("opened", listener.states.get(1).getState());
+    assertTrue(channel.isOpen());
+  }
+
+  @Test
+  public void reportsUnavailableWhenUpgradeRejected() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(404));
+
+    RecordingListener listener = new RecordingListener(1);
+    channel.open(server.url("/doors/state/stream").toString(), listener);
+
+    assertTrue(listener.await());
+    assertEquals(1, listener.failures.size());
+    assertFalse(channel.isOpen());
+  }
+
+  @Test
+  public void reportsUnavailableWhenClosedByServer() throws Exception {
+    server.enqueue(new MockResponse().withWebSocketUpgrade(new ServerListener() {
+      @Override
+      public void onOpen(WebSocket webSocket, Response response) {
+        webSocket.close(1001, "going away");
+      }
+    }));
+
+    RecordingListener listener = new RecordingListener(1);
+    channel.open(server.url("/doors/state/stream").toString(), listener);
+
+    assertTrue(listener.await());
+    assertEquals(1, listener.failures.size());
+    assertFalse(channel.isOpen());
+  }
+
+  /**
+   * Server side of the channel, acknowledges close initiated by the client.
+   */
+  static class ServerListener extends WebSocketListener {
+
+    @Override
+    public void onClosing(WebSocket webSocket, int code, String reason) {
+      webSocket.close(code, null);
+    }
+  }
+
+  static class RecordingListener implements DoorsStateChannel.Listener {
+
+    final List<DoorsState> states = new CopyOnWriteArrayList<>();
+    final List<Throwable> failures = new CopyOnWriteArrayList<>();
+    final CountDownLatch latch;
+
+    RecordingListener(int events) {
+      latch = new CountDownLatch(events);
+    }
+
+    boolean await() throws InterruptedException {
+      return latch.await(5, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void onStateChanged(DoorsState state) {
+      states.add(state);
+      latch.countDown();
+    }
+
+    @Override
+    public void onUnavailable(Throwable t) {
+      failures.add(t);
+      latch.countDown();
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data;
+
+import com.imgtec.sesame.data.api.pojo.DoorsState;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests ordering of observations in {@link DoorsStateStore}.
+ */
+public class DoorsStateStoreTest {
+
+  @Test
+  public void storesNewerObservations() {
+    final DoorsStateStore store = new DoorsStateStore();
+    assertNull(store.get());
+
+    assertTrue(store.offer(state("opened"), 100));
+    assertTrue(store.offer(state("closed"), 200));
+
+    assertEquals("closed", store.get().getState().getState());
+    assertEquals(2, store.get().getVersion());
+  }
+
+  @Test
+  public void rejectsOlderObservation() {
+    final DoorsStateStore store = new DoorsStateStore();
+    store.offer(state("closed"), 200);
+
+    assertFalse(store.offer(state("opened"), 100));
+
+    assertEquals("closed", store.get().getState().getState());
+    assertEquals(1, store.get().getVersion());
+  }
+
+  @Test
+  public void keepsLastSettledStateWhileDoorsMove() {
+    final DoorsStateStore store = new DoorsStateStore();
+    assertTrue(store.offer(state("closed"), 100));
+    assertTrue(store.offer(state("unknown"), 200));
+
+    assertEquals("unknown", store.get().getState().getState());
+    assertEquals("closed", store.get().getSettledState().getState());
+  }
+
+  @Test
+  public void rejectsStaleMovingState() {
+    final DoorsStateStore store = new DoorsStateStore();
+    store.offer(state("opened"), 200);
+
+    assertFalse(store.offer(state("unknown"), 100));
+
+    assertEquals("opened", store.get().getState().getState());
+  }
+
+  @Test
+  public void hasNoSettledStateBeforeDoorsStop() {
+    final DoorsStateStore store = new DoorsStateStore();
+    store.offer(state("unknown"), 100);
+
+    assertNull(store.get().getSettledState());
+  }
+
+  @Test
+  public void snapshotIsNotAffectedByStateChanges() {
+    final DoorsStateStore store = new DoorsStateStore();
+    final DoorsState state = state("opened");
+    store.offer(state, 100);
+
+    state.setState("closed");
+    store.get().getState().setState("closed");
+
+    assertEquals("opened", store.get().getState().getState());
+  }
+
+  private static DoorsState state(String value) {
+    final DoorsState state = new DoorsState();
+    state.setState(value);
+    return state;
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data;
+
+import com.imgtec.sesame.data.api.pojo.DoorsState;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link DoorsStateStream} with upstream and executor driven by the test, retries run
+ * on a real timer.
+ */
+public class DoorsStateStreamTest {
+
+  private final List<Runnable> tasks = new ArrayList<>();
+  private final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1);
+  private DataCallback<DataService, DoorsState> sink;
+  private int starts;
+  private int stops;
+  private DoorsStateStream stream;
+
+  @Before
+  public void setUp() {
+    stream = new DoorsStateStream(null, new DoorsStateStream.Upstream() {
+      @Override
+      public void start(DataCallback<DataService, DoorsState> sink) {
+        DoorsStateStreamTest.this.sink = sink;
+        starts++;
+      }
+
+      @Override
+      public void stop(DataCallback<DataService, DoorsState> sink) {
+        stops++;
+      }
+    }, tasks::add, timer);
+  }
+
+  @After
+  public void tearDown() {
+    timer.shutdownNow();
+  }
+
+  @Test
+  public void runsUpstreamWhileSubscribed() {
+    final Cancellable first = stream.subscribe(new Recorder());
+    final Cancellable second = stream.subscribe(new Recorder());
+    assertEquals(1, starts);
+
+    first.cancel();
+    assertEquals(0, stops);
+    second.cancel();
+    assertEquals(1, stops);
+    assertEquals(0, stream.getSubscriberCount());
+  }
+
+  @Test
+  public void replaysLatestStateToNewSubscriber() {
+    stream.subscribe(new Recorder());
+    final DoorsState state = state("opened");
+    sink.onSuccess(null, state);
+    runTasks();
+
+    final Recorder late = new Recorder();
+    stream.subscribe(late);
+    runTasks();
+
+    assertEquals(1, late.states.size());
+    assertSame(state, late.states.get(0));
+  }
+
+  @Test
+  public void conflatesPendingStates() {
+    final Recorder recorder = new Recorder();
+    stream.subscribe(recorder);
+
+    sink.onSuccess(null, state("opening"));
+    sink.onFailure(null, new Exception("poll failed"));
+    sink.onSuccess(null, state("opened"));
+    assertEquals(1, tasks.size());
+    runTasks();
+
+    assertEquals(1, recorder.states.size());
+    assertEquals("opened", recorder.states.get(0).getState());
+    assertNull(recorder.failure);
+  }
+
+  @Test
+  public void canceledSubscriberIsNotNotified() {
+    final Recorder recorder = new Recorder();
+    final Cancellable subscription = stream.subscribe(recorder);
+    stream.subscribe(new Recorder());
+
+    sink.onSuccess(null, state("opened"));
+    subscription.cancel();
+    runTasks();
+
+    assertEquals(0, recorder.states.size());
+  }
+
+  @Test
+  public void rejectedDeliveryIsRetried() throws Exception {
+    final AtomicInteger rejections = new AtomicInteger(2);
+    final BlockingQueue<Runnable> accepted = new LinkedBlockingQueue<>();
+    final DoorsStateStream stream = new DoorsStateStream(null, new DoorsStateStream.Upstream() {
+      @Override
+      public void start(DataCallback<DataService, DoorsState> sink) {
+        DoorsStateStreamTest.this.sink = sink;
+      }
+
+      @Override
+      public void stop(DataCallback<DataService, DoorsState> sink) {
+      }
+    }, task -> {
+      if (rejections.getAndDecrement() > 0) {
+        throw new RejectedExecutionException("queue full");
+      }
+      accepted.add(task);
+    }, timer);
+    final Recorder recorder = new Recorder();
+    stream.subscribe(recorder);
+
+    sink.onSuccess(null, state("opening"));
+    sink.onSuccess(null, state("opened"));
+
+    final Runnable delivery = accepted.poll(5, TimeUnit.SECONDS);
+    assertNotNull(delivery);
+    delivery.run();
+    assertEquals(1, recorder.states.size());
+    assertEquals("opened", recorder.states.get(0).getState());
+    assertTrue(accepted.isEmpty());
+  }
+
+  private void runTasks() {
+    while (!tasks.isEmpty()) {
+      tasks.remove(0).run();
+    }
+  }
+
+  private static DoorsState state(String value) {
+    final DoorsState state = new DoorsState();
+    state.setState(value);
+    return state;
+  }
+
+  private static class Recorder implements DataCallback<DataService, DoorsState> {
+
+    final List<DoorsState> states = new ArrayList<>();
+    Throwable failure;
+
+    @Override
+    public void onSuccess(DataService service, DoorsState result) {
+      states.add(result);
+    }
+
+    @Override
+    public void onFailure(DataService service, Throwable t) {
+      failure = t;
+    }
+  }
+}
@@ -0,0 +1,304 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+
+package com.imgtec.sesame.data;
+
+import com.google.gson.Gson;
+import com.imgtec.sesame.data.api.HostWrapper;
+import com.imgtec.sesame.data.api.RestApiService;
+import com.imgtec.sesame.data.api.pojo.DoorsEntrypoint;
+import com.imgtec.sesame.data.api.pojo.DoorsState;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Call;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests retries, sharing and deadlines of {@link DataServiceImpl.EntryPointRequestor} against
+ * a local server.
+ */
+public class EntryPointRequestorTest {
+
+  private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+  private final RequestCoalescer<DataService> coalescer = new RequestCoalescer<>();
+  private final BlockingQueue<MockResponse> stateResponses = new LinkedBlockingQueue<>();
+  private final AtomicInteger stateRequests = new AtomicInteger();
+  private final CountDownLatch stateRequested = new CountDownLatch(1);
+  private volatile long discoveryDelay;
+  private MockWebServer server;
+  private RestApiService service;
+  private HostWrapper hostWrapper;
+  private EntrypointResolver resolver;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockWebServer();
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        if (request.getPath().startsWith("/api")) {
+          return links("doors", "/doors").setBodyDelay(discoveryDelay, TimeUnit.MILLISECONDS);
+        }
+        if (request.getPath().startsWith("/doors")) {
+          return links("state", "/state");
+        }
+        stateRequests.incrementAndGet();
+        stateRequested.countDown();
+        final MockResponse response = stateResponses.poll(5, TimeUnit.SECONDS);
+        return response != null ? response : new MockResponse().setResponseCode(504);
+      }
+    });
+    server.start();
+
+    service = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .addConverterFactory(GsonConverterFactory.create(new Gson()))
+        .callbackExecutor(Runnable::run)
+        .build()
+        .create(RestApiService.class);
+    hostWrapper = new HostWrapper(null);
+    hostWrapper.setHost(server.url("/api").toString());
+    resolver = new EntrypointResolver(service, hostWrapper,
+        new LinksCache(new InMemoryPreferences(), new Gson()));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    stateResponses.add(new MockResponse().setResponseCode(504));
+    executor.shutdownNow();
+    server.shutdown();
+  }
+
+  @Test
+  public void retriesUnavailableServer() throws Exception {
+    stateResponses.add(new MockResponse().setResponseCode(503));
+    stateResponses.add(state("opened"));
+    final Result result = new Result();
+    final StateRequest request = new StateRequest(result, 5000, false);
+
+    request.run();
+
+    assertEquals("opened", result.await().getState());
+    assertEquals(2, stateRequests.get());
+    assertTrue(request.completed.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void retryIsSkippedWhenBackoffExceedsDeadline() throws Exception {
+    stateResponses.add(new MockResponse().setResponseCode(503).setBody("unavailable"));
+    final Result result = new Result();
+    final StateRequest request = new StateRequest(result,
+        DataServiceImpl.EntryPointRequestor.RETRY_DELAY - 100, false);
+
+    request.run();
+
+    final Throwable failure = result.awaitFailure();
+    assertFalse(failure.toString(), failure instanceof DeadlineExceededException);
+    assertEquals(1, stateRequests.get());
+  }
+
+  @Test
+  public void deadlineCoversEntrypointDiscovery() throws Exception {
+    discoveryDelay = 1000;
+    final Result result = new Result();
+    final StateRequest request = new StateRequest(result, 500, false);
+
+    request.run();
+
+    final Throwable failure = result.awaitFailure();
+    assertTrue(failure.toString(), failure instanceof DeadlineExceededException);
+    assertTrue(request.completed.await(5, TimeUnit.SECONDS));
+    assertNull(request.call.get());
+    assertEquals(0, stateRequests.get());
+  }
+
+  @Test
+  public void followerGetsResultOfLeader() throws Exception {
+    final Result leaderResult = new Result();
+    final Result followerResult = new Result();
+    new StateRequest(leaderResult, 10000, true).run();
+    assertTrue(stateRequested.await(5, TimeUnit.SECONDS));
+
+    new StateRequest(followerResult, 5000, true).run();
+    stateResponses.add(state("closed"));
+
+    final DoorsState state = leaderResult.await();
+    assertEquals("closed", state.getState());
+    assertSame(state, followerResult.await());
+    assertEquals(1, stateRequests.get());
+  }
+
+  @Test
+  public void followerGetsFailureOfLeader() throws Exception {
+    final Result leaderResult = new Result();
+    final Result followerResult = new Result();
+    new StateRequest(leaderResult, 10000, true).run();
+    assertTrue(stateRequested.await(5, TimeUnit.SECONDS));
+
+    new StateRequest(followerResult, 5000, true).run();
+    stateResponses.add(new MockResponse().setResponseCode(500).setBody("broken"));
+
+    assertTrue(leaderResult.awaitFailure() instanceof IOException);
+    assertTrue(followerResult.awaitFailure() instanceof IOException);
+    assertEquals(1, stateRequests.get());
+  }
+
+  @Test
+  public void canceledFollowerLeavesRequestToLeader() throws Exception {
+    final Result leaderResult = new Result();
+    final Result followerResult = new Result();
+    new StateRequest(leaderResult, 10000, true).run();
+    assertTrue(stateRequested.await(5, TimeUnit.SECONDS));
+
+    final StateRequest follower = new StateRequest(followerResult, 5000, true);
+    follower.run();
+    follower.cancel();
+    assertTrue(follower.completed.await(5, TimeUnit.SECONDS));
+
+    stateResponses.add(state("opened"));
+    assertEquals("opened", leaderResult.await().getState());
+    assertTrue(followerResult.results.isEmpty());
+  }
+
+  @Test
+  public void expiredDeadlineCancelsCallInFlight() throws Exception {
+    final Result result = new Result();
+    final StateRequest request = new StateRequest(result, 500, false);
+
+    request.run();
+
+    final Throwable failure = result.awaitFailure();
+    assertTrue(failure.toString(), failure instanceof DeadlineExceededException);
+    assertTrue(request.completed.await(5, TimeUnit.SECONDS));
+    // call is aborted after the failure has been reported
+    final long until = System.currentTimeMillis() + 5000;
+    while (!request.call.get().isCanceled() && System.currentTimeMillis() < until) {
+      Thread.sleep(10);
+    }
+    assertTrue(request.call.get().isCanceled());
+  }
+
+  private MockResponse links(String rel, String path) {
+    return new MockResponse()
+        .setBody("{\"links\":[{\"rel\":\"" + rel + "\",\"href\":\"" + server.url(path) + "\"}]}");
+  }
+
+  private static MockResponse state(String state) {
+    return new MockResponse().setBody("{\"state\":\"" + state + "\"}");
+  }
+
+  private class StateRequest extends DataServiceImpl.EntryPointRequestor<DataService, DoorsState> {
+
+    final CountDownLatch completed = new CountDownLatch(1);
+    final AtomicReference<Call<DoorsState>> call = new AtomicReference<>();
+    private final long budget;
+    private final boolean shared;
+
+    StateRequest(Result result, long budget, boolean shared) {
+      super(null, executor, service, hostWrapper, resolver, coalescer, result);
+      this.budget = budget;
+      this.shared = shared;
+    }
+
+    @Override
+    Call<DoorsState> createCall(RestApiService service, HostWrapper hostWrapper,
+                                DoorsEntrypoint entrypoint) throws IOException {
+      call.set(service.state(resolver.requireHref(entrypoint, "state")));
+      return call.get();
+    }
+
+    @Override
+    String coalescingKey(DoorsEntrypoint entrypoint) throws IOException {
+      return shared ? "GET " + resolver.requireHref(entrypoint, "state") : null;
+    }
+
+    @Override
+    long budget() {
+      return budget;
+    }
+
+    @Override
+    void onComplete() {
+      completed.countDown();
+    }
+  }
+
+  static class Result implements DataCallback<DataService, DoorsState> {
+
+    final BlockingQueue<Object> results = new LinkedBlockingQueue<>();
+
+    @Override
+    public void onSuccess(DataService service, DoorsState result) {
+      results.add(result);
+    }
+
+    @Override
+    public void onFailure(DataService service, Throwable t) {
+      results.add(t);
+    }
+
+    DoorsState await() throws Exception {
+      final Object result = results.poll(5, TimeUnit.SECONDS);
+      assertTrue("Unexpected result: " + result, result instanceof DoorsState);
+      return (DoorsState) result;
+    }
+
+    Throwable awaitFailure() throws Exception {
+      final Object result = results.poll(5, TimeUnit.SECONDS);
+      assertTrue("Unexpected result: " + result, result instanceof Throwable);
+      return (Throwable) result;
+    }
+  }
+}
@@ -0,0 +1,241 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data;
+
+import com.google.gson.Gson;
+import com.imgtec.sesame.data.api.HostWrapper;
+import com.imgtec.sesame.data.api.RestApiService;
+import com.imgtec.sesame.data.api.pojo.DoorsEntrypoint;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.HttpUrl;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link EntrypointResolver} against local servers.
+ */
+public class EntrypointResolverTest {
+
+  private final CountDownLatch release = new CountDownLatch(1);
+  private MockWebServer previous;
+  private MockWebServer current;
+  private HostWrapper hostWrapper;
+  private CountingPreferences preferences;
+  private EntrypointResolver resolver;
+
+  @Before
+  public void setUp() throws Exception {
+    previous = new MockWebServer();
+    previous.start();
+    previous.setDispatcher(new HostDispatcher("previous", previous.url("/doors"), release));
+    current = new MockWebServer();
+    current.start();
+    current.setDispatcher(new HostDispatcher("current", current.url("/doors"),
+        new CountDownLatch(0)));
+
+    final RestApiService service = new Retrofit.Builder()
+        .baseUrl(current.url("/"))
+        .addConverterFactory(GsonConverterFactory.create(new Gson()))
+        .callbackExecutor(Runnable::run)
+        .build()
+        .create(RestApiService.class);
+    hostWrapper = new HostWrapper(null);
+    preferences = new CountingPreferences();
+    resolver = new EntrypointResolver(service, hostWrapper,
+        new LinksCache(preferences, new Gson()));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    release.countDown();
+    previous.shutdown();
+    current.shutdown();
+  }
+
+  @Test
+  public void resolvesNewHostWhileDiscoveryOfPreviousOneIsInFlight() throws Exception {
+    hostWrapper.setHost(previous.url("/api").toString());
+    final Result stale = new Result();
+    resolver.resolve(stale);
+    assertNotNull(previous.takeRequest(5, TimeUnit.SECONDS));
+
+    hostWrapper.setHost(current.url("/api").toString());
+    resolver.clear();
+    final Result fresh = new Result();
+    resolver.resolve(fresh);
+
+    assertEquals("current", fresh.await().getLinkByRel("state").getHref());
+
+    release.countDown();
+    assertEquals("previous", stale.await().getLinkByRel("state").getHref());
+    // result of the previous host is not cached
+    assertEquals("current", resolver.getCached().get().getLinkByRel("state").getHref());
+  }
+
+  @Test
+  public void persistedLinksAreReadOncePerHost() throws Exception {
+    hostWrapper.setHost(previous.url("/api").toString());
+    final Result first = new Result();
+    final Result second = new Result();
+    resolver.resolve(first);
+    resolver.resolve(second);
+    assertEquals(1, preferences.reads.get());
+
+    release.countDown();
+    first.await();
+    second.await();
+
+    hostWrapper.setHost(current.url("/api").toString());
+    resolver.clear();
+    final Result fresh = new Result();
+    resolver.resolve(fresh);
+    fresh.await();
+    assertEquals(2, preferences.reads.get());
+  }
+
+  @Test
+  public void missingEntrypointLinkInvalidatesLinks() throws Exception {
+    hostWrapper.setHost(current.url("/api").toString());
+    final Result result = new Result();
+    resolver.resolve(result);
+    final String state = result.await().getLinkByRel("state").getHref();
+
+    resolver.onResponse(notFound(current.url("/").resolve(state)));
+
+    assertNull(resolver.getCached().get());
+    assertNull(preferences.getString(hostWrapper.getHost(), null));
+  }
+
+  @Test
+  public void missingOtherResourceKeepsLinks() throws Exception {
+    hostWrapper.setHost(current.url("/api").toString());
+    final Result result = new Result();
+    resolver.resolve(result);
+    result.await();
+
+    resolver.onResponse(notFound(current.url("/logs/42")));
+
+    assertNotNull(resolver.getCached().get());
+    assertNotNull(preferences.getString(hostWrapper.getHost(), null));
+  }
+
+  private static Response<Object> notFound(HttpUrl url) {
+    return Response.error(ResponseBody.create(null, ""), new okhttp3.Response.Builder()
+        .request(new Request.Builder().url(url).build())
+        .protocol(Protocol.HTTP_1_1)
+        .code(404)
+        .message("Not Found")
+        .build());
+  }
+
+  /**
+   * Serves 'api' and 'doors' of a host, 'state' link is the name of the host.
+   */
+  static class HostDispatcher extends Dispatcher {
+
+    private final String name;
+    private final HttpUrl doors;
+    private final CountDownLatch release;
+
+    HostDispatcher(String name, HttpUrl doors, CountDownLatch release) {
+      this.name = name;
+      this.doors = doors;
+      this.release = release;
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+      release.await(5, TimeUnit.SECONDS);
+      if (request.getPath().startsWith("/api")) {
+        return new MockResponse()
+            .setBody("{\"links\":[{\"rel\":\"doors\",\"href\":\"" + doors + "\"}]}");
+      }
+      return new MockResponse()
+          .setBody("{\"links\":[{\"rel\":\"state\",\"href\":\"" + name + "\"}]}");
+    }
+  }
+
+  static class CountingPreferences extends InMemoryPreferences {
+
+    final AtomicInteger reads = new AtomicInteger();
+
+    @Override
+    public String getString(String key, String defValue) {
+      reads.incrementAndGet();
+      return super.getString(key, defValue);
+    }
+  }
+
+  static class Result implements DataCallback<EntrypointResolver, DoorsEntrypoint> {
+
+    private final BlockingQueue<Object> results = new LinkedBlockingQueue<>();
+
+    @Override
+    public void onSuccess(EntrypointResolver service, DoorsEntrypoint result) {
+      results.add(result);
+    }
+
+    @Override
+    public void onFailure(EntrypointResolver service, Throwable t) {
+      results.add(t);
+    }
+
+    DoorsEntrypoint await() throws Exception {
+      final Object result = results.poll(5, TimeUnit.SECONDS);
+      assertTrue("Unexpected result: " + result, result instanceof DoorsEntrypoint);
+      return (DoorsEntrypoint) result;
+    }
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data;
+
+import android.content.SharedPreferences;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link SharedPreferences} kept in a map, for tests of classes persisting their state.
+ */
+public class InMemoryPreferences implements SharedPreferences {
+
+  private final Map<String, Object> values = new HashMap<>();
+
+  @Override
+  public synchronized Map<String, ?> getAll() {
+    return new HashMap<>(values);
+  }
+
+  @Override
+  public String getString(String key, String defValue) {
+    return get(key, defValue);
+  }
+
+  @Override
+  public Set<String> getStringSet(String key, Set<String> defValues) {
+    return get(key, defValues);
+  }
+
+  @Override
+  public int getInt(String key, int defValue) {
+    return get(key, defValue);
+  }
+
+  @Override
+  public long getLong(String key, long defValue) {
+    return get(key, defValue);
+  }
+
+  @Override
+  public float getFloat(String key, float defValue) {
+    return get(key, defValue);
+  }
+
+  @Override
+  public boolean getBoolean(String key, boolean defValue) {
+    return get(key, defValue);
+  }
+
+  @Override
+  public synchronized boolean contains(String key) {
+    return values.containsKey(key);
+  }
+
+  @Override
+  public Editor edit() {
+    return new InMemoryEditor();
+  }
+
+  @Override
+  public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+  }
+
+  @Override
+  public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+  }
+
+  @SuppressWarnings("unchecked")
+  private synchronized <T> T get(String key, T defValue) {
+    return values.containsKey(key) ? (T) values.get(key) : defValue;
+  }
+
+  private class InMemoryEditor implements Editor {
+
+    private final Map<String, Object> changes = new HashMap<>();
+    private final Set<String> removals = new HashSet<>();
+    private boolean clear;
+
+    @Override
+    public Editor putString(String key, String value) {
+      return put(key, value);
+    }
+
+    @Override
+    public Editor putStringSet(String key, Set<String> values) {
+      return put(key, values != null ? new HashSet<>(values) : null);
+    }
+
+    @Override
+    public Editor putInt(String key, int value) {
+      return put(key, value);
+    }
+
+    @Override
+    public Editor putLong(String key, long value) {
+      return put(key, value);
+    }
+
+    @Override
+    public Editor putFloat(String key, float value) {
+      return put(key, value);
+    }
+
+    @Override
+    public Editor putBoolean(String key, boolean value) {
+      return put(key, value);
+    }
+
+    @Override
+    public Editor remove(String key) {
+      removals.add(key);
+      return this;
+    }
+
+    @Override
+    public Editor clear() {
+      clear = true;
+      return this;
+    }
+
+    @Override
+    public boolean commit() {
+      synchronized (InMemoryPreferences.this) {
+        if (clear) {
+          values.clear();
+        }
+        for (String key : removals) {
+          values.remove(key);
+        }
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+          if (change.getValue() == null) {
+            values.remove(change.getKey());
+          }
+          else {
+            values.put(change.getKey(), change.getValue());
+          }
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public void apply() {
+      commit();
+    }
+
+    private Editor put(String key, Object value) {
+      changes.put(key, value);
+      return this;
+    }
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data;
+
+import com.imgtec.sesame.data.api.CachePolicyInterceptor;
+import com.imgtec.sesame.data.api.pojo.DoorsState;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Random;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link PollingScheduler} fed with responses passed through {@link CachePolicyInterceptor}.
+ */
+public class PollingSchedulerTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private MockWebServer server;
+  private OkHttpClient client;
+  private PollingScheduler scheduler;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockWebServer();
+    server.start();
+    client = new OkHttpClient.Builder()
+        .cache(new Cache(folder.newFolder(), 1024 * 1024))
+        .addNetworkInterceptor(new CachePolicyInterceptor())
+        .build();
+    scheduler = new PollingScheduler(new FixedRandom());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  @Test
+  public void serverMaxAgeOfStateIsPollingHint() throws Exception {
+    server.enqueue(new MockResponse()
+        .setHeader("Cache-Control", "max-age=20")
+        .setBody("{\"state\":\"unknown\"}"));
+    server.enqueue(new MockResponse().setBody("{\"state\":\"unknown\"}"));
+
+    final Response response = getState();
+    scheduler.onStateReceived(state("unknown"), response.headers());
+    assertEquals(20000, scheduler.nextDelay());
+
+    // hint is kept, but state is still never stored
+    assertTrue(response.cacheControl().noStore());
+    final Response next = getState();
+    assertNull(next.cacheResponse());
+    assertEquals(2, server.getRequestCount());
+  }
+
+  @Test
+  public void stateWithoutHintIsPolledAtOwnRate() throws Exception {
+    server.enqueue(new MockResponse().setBody("{\"state\":\"unknown\"}"));
+
+    final Response response = getState();
+    scheduler.onStateReceived(state("unknown"), response.headers());
+
+    assertEquals(PollingScheduler.MOVING_INTERVAL, scheduler.nextDelay());
+  }
+
+  @Test
+  public void retryAfterOfFailureIsPollingHint() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(503).setHeader("Retry-After", "40"));
+
+    final Response response = getState();
+    scheduler.onFailure(response.headers());
+
+    assertEquals(40000, scheduler.nextDelay());
+  }
+
+  @Test
+  public void movingDoorsArePolledFast() {
+    scheduler.onStateReceived(state("unknown"), null);
+
+    assertEquals(PollingScheduler.MOVING_INTERVAL, scheduler.nextDelay());
+    assertEquals(PollingScheduler.MIN_POLL_DEADLINE, scheduler.pollDeadline());
+  }
+
+  @Test
+  public void idleIntervalGrowsUpToMax() {
+    scheduler.onStateReceived(state("closed"), null);
+    assertEquals(PollingScheduler.IDLE_MIN_INTERVAL, scheduler.nextDelay());
+
+    scheduler.onStateReceived(state("closed"), null);
+    assertEquals(2 * PollingScheduler.IDLE_MIN_INTERVAL, scheduler.nextDelay());
+
+    for (int i = 0; i < 10; i++) {
+      scheduler.onStateReceived(state("closed"), null);
+    }
+    assertEquals(PollingScheduler.IDLE_MAX_INTERVAL, scheduler.nextDelay());
+    assertEquals(PollingScheduler.MAX_POLL_DEADLINE, scheduler.pollDeadline());
+  }
+
+  @Test
+  public void changedStateRestoresMinInterval() {
+    for (int i = 0; i < 5; i++) {
+      scheduler.onStateReceived(state("closed"), null);
+    }
+
+    scheduler.onStateReceived(state("opened"), null);
+
+    assertEquals(PollingScheduler.IDLE_MIN_INTERVAL, scheduler.nextDelay());
+  }
+
+  @Test
+  public void stuckDoorsAreNoLongerPolledFast() {
+    for (int i = 0; i < PollingScheduler.MAX_MOVING_POLLS; i++) {
+      scheduler.onStateReceived(state("unknown"), null);
+    }
+    assertEquals(PollingScheduler.MOVING_INTERVAL, scheduler.nextDelay());
+
+    scheduler.onStateReceived(state("unknown"), null);
+
+    assertEquals(2 * PollingScheduler.IDLE_MIN_INTERVAL, scheduler.nextDelay());
+  }
+
+  @Test
+  public void failuresBackOffExponentially() {
+    scheduler.onFailure(null);
+    assertEquals(2 * PollingScheduler.IDLE_MIN_INTERVAL, scheduler.nextDelay());
+
+    scheduler.onFailure(null);
+    assertEquals(4 * PollingScheduler.IDLE_MIN_INTERVAL, scheduler.nextDelay());
+
+    for (int i = 0; i < 20; i++) {
+      scheduler.onFailure(null);
+    }
+    assertEquals(PollingScheduler.IDLE_MAX_INTERVAL, scheduler.nextDelay());
+
+    scheduler.onStateReceived(state("unknown"), null);
+    assertEquals(PollingScheduler.MOVING_INTERVAL, scheduler.nextDelay());
+  }
+
+  @Test
+  public void idleIntervalIsJittered() {
+    final PollingScheduler jittered = new PollingScheduler(new Random() {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public double nextDouble() {
+        return 0;
+      }
+    });
+    jittered.onStateReceived(state("opened"), null);
+
+    final long min = (long) (PollingScheduler.IDLE_MIN_INTERVAL * (1 - PollingScheduler.JITTER));
+    assertEquals(min, jittered.nextDelay());
+  }
+
+  @Test
+  public void resetRestoresFastPolling() {
+    scheduler.onStateReceived(state("closed"), null);
+    scheduler.onFailure(null);
+
+    scheduler.reset();
+
+    assertEquals(PollingScheduler.MOVING_INTERVAL, scheduler.nextDelay());
+  }
+
+  private Response getState() throws Exception {
+    final Response response = client.newCall(new Request.Builder()
+        .url(server.url("/state"))
+        .header(CachePolicyInterceptor.REL_HEADER, "state")
+        .build()).execute();
+    response.body().close();
+    return response;
+  }
+
+  private static DoorsState state(String value) {
+    final DoorsState state = new DoorsState();
+    state.setState(value);
+    return state;
+  }
+
+  /**
+   * Makes jitter zero.
+   */
+  static class FixedRandom extends Random {
+
+    @Override
+    public double nextDouble() {
+      return 0.5;
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data;
+
+import com.imgtec.sesame.data.RequestCoalescer.Role;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests attaching requests to the request in flight in {@link RequestCoalescer}.
+ */
+public class RequestCoalescerTest {
+
+  private final RequestCoalescer<Object> coalescer = new RequestCoalescer<>();
+
+  @Test
+  public void followerWithEarlierDeadlineSharesResult() {
+    final Results leader = new Results();
+    final Results follower = new Results();
+
+    assertEquals(Role.LEADER, coalescer.join("GET /state", leader, Deadline.after(10000)));
+    assertEquals(Role.FOLLOWER, coalescer.join("GET /state", follower, Deadline.after(5000)));
+    coalescer.complete("GET /state", this, "opened");
+
+    assertEquals("opened", leader.get(0));
+    assertEquals("opened", follower.get(0));
+  }
+
+  @Test
+  public void callerWithLaterDeadlineIsNotAttached() {
+    final Results leader = new Results();
+    final Results caller = new Results();
+
+    coalescer.join("GET /state", leader, Deadline.after(2000));
+    assertEquals(Role.ALONE, coalescer.join("GET /state", caller, Deadline.after(20000)));
+    coalescer.fail("GET /state", this, new DeadlineExceededException(Deadline.after(2000)));
+
+    assertTrue(leader.get(0) instanceof DeadlineExceededException);
+    assertTrue(caller.isEmpty());
+  }
+
+  @Test
+  public void requestIsKeptWhileOthersWait() {
+    final Results leader = new Results();
+    final Results follower = new Results();
+    coalescer.join("GET /state", leader, Deadline.after(10000));
+    coalescer.join("GET /state", follower, Deadline.after(5000));
+
+    assertFalse(coalescer.leave("GET /state", leader));
+    assertTrue(coalescer.leave("GET /state", follower));
+  }
+
+  static class Results extends ArrayList<Object> implements DataCallback<Object, Object> {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public void onSuccess(Object service, Object result) {
+      add(result);
+    }
+
+    @Override
+    public void onFailure(Object service, Throwable t) {
+      add(t);
+    }
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data;
+
+import com.imgtec.sesame.data.RequestScheduler.Priority;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link RequestScheduler} with small thread pool.
+ */
+public class RequestSchedulerTest {
+
+  private final ThreadPoolExecutor pool = new ThreadPoolExecutor(0, 2, 30, TimeUnit.SECONDS,
+      new SynchronousQueue<>(), new ThreadPoolExecutor.AbortPolicy());
+
+  @After
+  public void tearDown() {
+    pool.shutdownNow();
+  }
+
+  @Test
+  public void runsTaskRejectedBySaturatedPool() throws Exception {
+    final RequestScheduler scheduler = new RequestScheduler(pool, 2, 1, 8);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch started = new CountDownLatch(2);
+    for (int i = 0; i < 2; i++) {
+      scheduler.submit(Priority.USER, () -> {
+        started.countDown();
+        await(release);
+      });
+    }
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    final CountDownLatch queuedRan = new CountDownLatch(1);
+    scheduler.submit(Priority.USER, queuedRan::countDown);
+    assertEquals(1, scheduler.getMetrics(Priority.USER).getQueuedCount());
+
+    release.countDown();
+    assertTrue(queuedRan.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void startsQueuedTasksInPriorityOrder() throws Exception {
+    final RequestScheduler scheduler = new RequestScheduler(pool, 1, 1, 8);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(4);
+    final List<String> order = new CopyOnWriteArrayList<>();
+    scheduler.submit(Priority.FOREGROUND, () -> {
+      await(release);
+      done.countDown();
+    });
+
+    scheduler.submit(Priority.BACKGROUND, () -> {
+      order.add("background");
+      done.countDown();
+    });
+    scheduler.submit(Priority.FOREGROUND, () -> {
+      order.add("foreground");
+      done.countDown();
+    });
+    assertEquals(2, scheduler.getMetrics(Priority.BACKGROUND).getQueuedCount()
+        + scheduler.getMetrics(Priority.FOREGROUND).getQueuedCount());
+
+    release.countDown();
+    done.countDown();
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals("foreground", order.get(0));
+    assertEquals("background", order.get(1));
+  }
+
+  @Test
+  public void userTaskIsNotLimitedBySlots() throws Exception {
+    final RequestScheduler scheduler = new RequestScheduler(pool, 1, 1, 8);
+    final CountDownLatch release = new CountDownLatch(1);
+    scheduler.submit(Priority.FOREGROUND, () -> await(release));
+
+    final CountDownLatch userRan = new CountDownLatch(1);
+    scheduler.submit(Priority.USER, userRan::countDown);
+
+    assertTrue(userRan.await(5, TimeUnit.SECONDS));
+    release.countDown();
+  }
+
+  @Test
+  public void backgroundTasksLeaveSlotsForOthers() throws Exception {
+    final RequestScheduler scheduler = new RequestScheduler(pool, 2, 1, 8);
+    final CountDownLatch release = new CountDownLatch(1);
+    scheduler.submit(Priority.BACKGROUND, () -> await(release));
+    scheduler.submit(Priority.BACKGROUND, () -> await(release));
+    assertEquals(1, scheduler.getMetrics(Priority.BACKGROUND).getQueuedCount());
+
+    final CountDownLatch foregroundRan = new CountDownLatch(1);
+    scheduler.submit(Priority.FOREGROUND, foregroundRan::countDown);
+
+    assertTrue(foregroundRan.await(5, TimeUnit.SECONDS));
+    release.countDown();
+  }
+
+  @Test(expected = RejectedExecutionException.class)
+  public void backgroundQueueIsBounded() {
+    final RequestScheduler scheduler = new RequestScheduler(pool, 1, 1, 1);
+    final CountDownLatch release = new CountDownLatch(1);
+    try {
+      scheduler.submit(Priority.FOREGROUND, () -> await(release));
+      scheduler.submit(Priority.BACKGROUND, () -> {});
+      scheduler.submit(Priority.BACKGROUND, () -> {});
+    }
+    finally {
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void canceledTaskIsNotRun() throws Exception {
+    final RequestScheduler scheduler = new RequestScheduler(pool, 1, 1, 8);
+    final CountDownLatch release = new CountDownLatch(1);
+    scheduler.submit(Priority.FOREGROUND, () -> await(release));
+    final CountDownLatch canceledRan = new CountDownLatch(1);
+    scheduler.submit(Priority.FOREGROUND, canceledRan::countDown).cancel(false);
+    final CountDownLatch lastRan = new CountDownLatch(1);
+    scheduler.submit(Priority.FOREGROUND, lastRan::countDown);
+
+    release.countDown();
+
+    assertTrue(lastRan.await(5, TimeUnit.SECONDS));
+    assertEquals(1, canceledRan.getCount());
+  }
+
+  @Test
+  public void asyncTaskHoldsSlotUntilDone() throws Exception {
+    final RequestScheduler scheduler = new RequestScheduler(pool, 1, 1, 8);
+    final AtomicReference<Runnable> done = new AtomicReference<>();
+    final CountDownLatch started = new CountDownLatch(1);
+    scheduler.submitAsync(Priority.FOREGROUND, d -> {
+      done.set(d);
+      started.countDown();
+    });
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    final CountDownLatch nextRan = new CountDownLatch(1);
+    scheduler.submit(Priority.FOREGROUND, nextRan::countDown);
+    // worker of the first task has returned, its call is still in flight
+    assertFalse(nextRan.await(100, TimeUnit.MILLISECONDS));
+    assertEquals(1, scheduler.getMetrics(Priority.FOREGROUND).getQueuedCount());
+
+    done.get().run();
+    assertTrue(nextRan.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void asyncTaskDoneWhileRunningReleasesSlot() throws Exception {
+    final RequestScheduler scheduler = new RequestScheduler(pool, 1, 1, 8);
+    scheduler.submitAsync(Priority.BACKGROUND, Runnable::run);
+    final CountDownLatch failing = new CountDownLatch(1);
+    scheduler.submitAsync(Priority.BACKGROUND, d -> {
+      failing.countDown();
+      throw new IllegalStateException("Failed to start");
+    });
+    assertTrue(failing.await(5, TimeUnit.SECONDS));
+
+    final CountDownLatch lastRan = new CountDownLatch(1);
+    scheduler.submit(Priority.BACKGROUND, lastRan::countDown);
+    assertTrue(lastRan.await(5, TimeUnit.SECONDS));
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+
+package com.imgtec.sesame.data;
+
+import com.google.gson.Gson;
+import com.imgtec.sesame.data.api.pojo.DoorsState;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests persisting results in {@link SnapshotStore}.
+ */
+public class SnapshotStoreTest {
+
+  private static final String HOST = "http://example.com/api";
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private SnapshotStore store;
+
+  @Before
+  public void setUp() {
+    store = new SnapshotStore(folder.getRoot(), new Gson());
+  }
+
+  @Test
+  public void savedSnapshotIsLoaded() {
+    store.save(HOST, "state", state("opened"));
+
+    final SnapshotStore.Snapshot<DoorsState> snapshot = store.load(HOST, "state", DoorsState.class);
+
+    assertEquals("opened", snapshot.getValue().getState());
+    assertTrue(snapshot.getAge() >= 0 && snapshot.getAge() < SnapshotStore.TTL);
+  }
+
+  @Test
+  public void snapshotsAreKeptPerHost() {
+    store.save(HOST, "state", state("opened"));
+
+    assertNull(store.load("http://other.com/api", "state", DoorsState.class));
+    assertNull(store.load(null, "state", DoorsState.class));
+  }
+
+  @Test
+  public void expiredSnapshotIsDropped() throws Exception {
+    final File file = write(System.currentTimeMillis() - SnapshotStore.TTL - 1000,
+        "{\"state\":\"opened\"}");
+
+    assertNull(store.load(HOST, "state", DoorsState.class));
+    assertFalse(file.exists());
+  }
+
+  @Test
+  public void snapshotFromFutureIsDropped() throws Exception {
+    final File file = write(System.currentTimeMillis() + 60 * 1000, "{\"state\":\"opened\"}");
+
+    assertNull(store.load(HOST, "state", DoorsState.class));
+    assertFalse(file.exists());
+  }
+
+  @Test
+  public void corruptedSnapshotIsDropped() throws Exception {
+    final File file = file();
+    file.getParentFile().mkdirs();
+    final FileOutputStream output = new FileOutputStream(file);
+    output.write(new byte[] {0, 0, 1, 89, 0, 0, 0, 0, 'n', 'o', 't', ' ', 'g', 'z', 'i', 'p'});
+    output.close();
+
+    assertNull(store.load(HOST, "state", DoorsState.class));
+    assertFalse(file.exists());
+  }
+
+  @Test
+  public void malformedJsonIsDropped() throws Exception {
+    final File file = write(System.currentTimeMillis(), "{\"state\":");
+
+    assertNull(store.load(HOST, "state", DoorsState.class));
+    assertFalse(file.exists());
+  }
+
+  /**
+   * Writes snapshot file the way the store does, with given save time.
+   */
+  private File write(long savedAt, String json) throws Exception {
+    final File file = file();
+    file.getParentFile().mkdirs();
+    final DataOutputStream output = new DataOutputStream(new FileOutputStream(file));
+    output.writeLong(savedAt);
+    final Writer writer = new OutputStreamWriter(new GZIPOutputStream(output), "UTF-8");
+    writer.write(json);
+    writer.close();
+    return file;
+  }
+
+  private File file() throws Exception {
+    return new File(new File(folder.getRoot(), URLEncoder.encode(HOST, "UTF-8")), "state");
+  }
+
+  private static DoorsState state(String value) {
+    final DoorsState state = new DoorsState();
+    state.setState(value);
+    return state;
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests caching headers set by {@link CachePolicyInterceptor}.
+ */
+public class CachePolicyInterceptorTest {
+
+  private static final String FULL_PAGE = "{\"PageInfo\":{\"ItemsCount\":10},\"items\":[]}";
+
+  private MockWebServer server;
+  private OkHttpClient client;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockWebServer();
+    server.start();
+    client = new OkHttpClient.Builder()
+        .addNetworkInterceptor(new CachePolicyInterceptor())
+        .build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  @Test
+  public void logsPageIsRevalidated() throws Exception {
+    server.enqueue(new MockResponse()
+        .setHeader("Cache-Control", "max-age=600")
+        .setHeader("Date", "Mon, 02 Jan 2017 10:00:00 GMT")
+        .setBody(FULL_PAGE));
+
+    final Response response = get("/logs?pageSize=10&startIndex=0", "logs");
+
+    assertTrue(response.cacheControl().noCache());
+    assertEquals(-1, response.cacheControl().maxAgeSeconds());
+    assertEquals("Mon, 02 Jan 2017 10:00:00 GMT", response.header("Last-Modified"));
+  }
+
+  @Test
+  public void stateIsNeverStored() throws Exception {
+    server.enqueue(new MockResponse()
+        .setHeader("Cache-Control", "max-age=20")
+        .setBody("{\"state\":\"opened\"}"));
+
+    final Response response = get("/state", "state");
+
+    assertTrue(response.cacheControl().noStore());
+    assertEquals(20, response.cacheControl().maxAgeSeconds());
+  }
+
+  @Test
+  public void statsAreFreshForMaxAge() throws Exception {
+    server.enqueue(new MockResponse()
+        .setHeader("Cache-Control", "no-cache")
+        .setHeader("Date", "Mon, 02 Jan 2017 10:00:00 GMT")
+        .setBody("{}"));
+
+    final Response response = get("/stats", "stats");
+
+    assertEquals(CachePolicyInterceptor.STATS_MAX_AGE, response.cacheControl().maxAgeSeconds());
+    assertEquals("Mon, 02 Jan 2017 10:00:00 GMT", response.header("Last-Modified"));
+  }
+
+  private Response get(String path, String rel) throws Exception {
+    final Response response = client.newCall(new Request.Builder()
+        .url(server.url(path))
+        .header(CachePolicyInterceptor.REL_HEADER, rel)
+        .build()).execute();
+    response.body().close();
+    return response;
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data.api;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParser;
+import com.imgtec.sesame.data.api.pojo.DoorsState;
+import com.imgtec.sesame.data.api.pojo.DoorsStatistics;
+import com.imgtec.sesame.data.api.pojo.Log;
+import com.imgtec.sesame.data.api.pojo.Logs;
+import com.imgtec.sesame.data.api.pojo.PojoTypeAdapterFactory;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests CBOR negotiation and decoding against {@link CborStandInServer}.
+ */
+public class CborConverterFactoryTest {
+
+  private static final String STATE = "{\"state\":\"opened\"}";
+  private static final String STATS = "{\"since\":\"2017-01-11\","
+      + "\"opening\":{\"min\":1.5,\"max\":12,\"avg\":4.2},"
+      + "\"closing\":{\"min\":0.1,\"max\":-3,\"avg\":null},"
+      + "\"links\":[{\"rel\":\"self\",\"href\":\"/doors/stats\"}]}";
+
+  private final Gson gson = new GsonBuilder()
+      .registerTypeAdapterFactory(new PojoTypeAdapterFactory())
+      .create();
+  private MockWebServer server;
+
+  @After
+  public void tearDown() throws Exception {
+    if (server != null) {
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void requestsAndDecodesCbor() throws Exception {
+    RestApiService api = start(new CborStandInServer(true, false).serve("/doors/state", STATE));
+
+    Response<DoorsState> response = api.state(server.url("/doors/state").toString()).execute();
+
+    RecordedRequest request = server.takeRequest();
+    assertTrue(request.getHeader("Accept").contains("application/cbor"));
+    assertTrue(CborConverterFactory.isCbor(response.raw().body().contentType()));
+    assertEquals("opened", response.body().getState());
+  }
+
+  @Test
+  public void fallsBackToJson() throws Exception {
+    RestApiService api = start(new CborStandInServer(false, false).serve("/doors/state", STATE));
+
+    Response<DoorsState> response = api.state(server.url("/doors/state").toString()).execute();
+
+    assertEquals("application", response.raw().body().contentType().type());
+    assertEquals("json", response.raw().body().contentType().subtype());
+    assertEquals("opened", response.body().getState());
+  }
+
+  @Test
+  public void decodesStatistics() throws Exception {
+    RestApiService api = start(new CborStandInServer(true, true).serve("/doors/stats", STATS));
+
+    DoorsStatistics stats = api.statistics(server.url("/doors/stats").toString()).execute().body();
+
+    assertEquals("2017-01-11", stats.getSince());
+    assertEquals(1.5, stats.getOpening().getMin(), 0);
+    assertEquals(12, stats.getOpening().getMax(), 0);
+    assertEquals(4.2, stats.getOpening().getAvg(), 0);
+    assertEquals(-3, stats.getClosing().getMax(), 0);
+    assertNull(stats.getClosing().getAvg());
+    assertEquals("/doors/stats", stats.getLinkByRel("self").getHref());
+  }
+
+  @Test
+  public void streamsLogs() throws Exception {
+    RestApiService api = start(new CborStandInServer(true, true).serve("/doors/logs", logs(30)));
+    final List<Log> received = new ArrayList<>();
+    LogsDecoder decoder = new LogsDecoder(gson, 100, 1024 * 1024);
+
+    Response<Logs> response = new LogsStreamCall(
+        api.logsStream(server.url("/doors/logs").toString(), 30, 0), decoder, received::addAll)
+        .execute();
+
+    assertEquals(30, received.size());
+    assertEquals("d29", received.get(29).getDate());
+    assertEquals(30, (int) response.body().getPageInfo().getTotalCount());
+    assertEquals(received, response.body().getLogs());
+  }
+
+  @Test
+  public void cborIsSmallerThanJson() throws Exception {
+    final String json = logs(50);
+    final Buffer cbor = CborStandInServer.encode(new JsonParser().parse(json), false);
+    assertTrue(cbor.size() < json.length());
+  }
+
+  @Test
+  public void readsTagsAndHalfFloats() throws Exception {
+    // {"min": tag(1) 1.5 as half float, "max": 0x10000 as uint32}
+    Buffer cbor = new Buffer()
+        .writeByte(0xa2)
+        .writeByte(0x63).writeUtf8("min").writeByte(0xc1).writeByte(0xf9).writeShort(0x3e00)
+        .writeByte(0x63).writeUtf8("max").writeByte(0x1a).writeInt(0x10000);
+
+    CborReader reader = new CborReader(cbor);
+    reader.beginObject();
+    assertEquals("min", reader.nextName());
+    assertEquals(1.5, reader.nextDouble(), 0);
+    assertEquals("max", reader.nextName());
+    assertEquals(0x10000, reader.nextInt());
+    reader.endObject();
+  }
+
+  private RestApiService start(CborStandInServer dispatcher) throws Exception {
+    server = new MockWebServer();
+    server.setDispatcher(dispatcher);
+    server.start();
+
+    return new Retrofit.Builder()
+        .addConverterFactory(CborConverterFactory.create(gson))
+        .addConverterFactory(GsonConverterFactory.create(gson))
+        .baseUrl(server.url("/"))
+        .client(new OkHttpClient())
+        .build()
+        .create(RestApiService.class);
+  }
+
+  private static String logs(int count) {
+    StringBuilder sb = new StringBuilder("{\"items\":[");
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append("{\"date\":\"d").append(i).append("\",\"action\":\"opened\"}");
+    }
+    return sb.append("],\"PageInfo\":{\"TotalCount\":").append(count)
+        .append(",\"ItemsCount\":").append(count)
+        .append(",\"StartIndex\":0}}").toString();
+  }
+}
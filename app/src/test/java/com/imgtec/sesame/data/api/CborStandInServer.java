@@ -0,0 +1,190 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data.api;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * Stand-in for the doors server. Serves JSON fixtures, encoded to CBOR when client accepts it
+ * and CBOR support is enabled.
+ */
+class CborStandInServer extends Dispatcher {
+
+  private final Map<String, String> fixtures = new HashMap<>();
+  private final boolean cborEnabled;
+  private final boolean indefiniteLength;
+
+  CborStandInServer(boolean cborEnabled, boolean indefiniteLength) {
+    this.cborEnabled = cborEnabled;
+    this.indefiniteLength = indefiniteLength;
+  }
+
+  CborStandInServer serve(String path, String json) {
+    fixtures.put(path, json);
+    return this;
+  }
+
+  @Override
+  public MockResponse dispatch(RecordedRequest request) {
+    final String path = request.getPath().split("\\?")[0];
+    final String json = fixtures.get(path);
+    if (json == null) {
+      return new MockResponse().setResponseCode(404);
+    }
+
+    final String accept = request.getHeader("Accept");
+    if (cborEnabled && accept != null && accept.contains("application/cbor")) {
+      return new MockResponse()
+          .setHeader("Content-Type", "application/cbor")
+          .setBody(encode(new JsonParser().parse(json), indefiniteLength));
+    }
+    return new MockResponse()
+        .setHeader("Content-Type", "application/json; charset=utf-8")
+        .setBody(json);
+  }
+
+  static Buffer encode(JsonElement element, boolean indefiniteLength) {
+    final Buffer buffer = new Buffer();
+    write(element, buffer, indefiniteLength);
+    return buffer;
+  }
+
+  private static void write(JsonElement element, Buffer out, boolean indefinite) {
+    if (element.isJsonNull()) {
+      out.writeByte(0xf6);
+    }
+    else if (element.isJsonArray()) {
+      final JsonArray array = element.getAsJsonArray();
+      if (indefinite) {
+        out.writeByte(0x9f);
+      }
+      else {
+        writeHead(out, 4, array.size());
+      }
+      for (JsonElement item : array) {
+        write(item, out, indefinite);
+      }
+      if (indefinite) {
+        out.writeByte(0xff);
+      }
+    }
+    else if (element.isJsonObject()) {
+      final JsonObject object = element.getAsJsonObject();
+      if (indefinite) {
+        out.writeByte(0xbf);
+      }
+      else {
+        writeHead(out, 5, object.entrySet().size());
+      }
+      for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+        writeText(out, entry.getKey());
+        write(entry.getValue(), out, indefinite);
+      }
+      if (indefinite) {
+        out.writeByte(0xff);
+      }
+    }
+    else {
+      writePrimitive(element.getAsJsonPrimitive(), out);
+    }
+  }
+
+  private static void writePrimitive(JsonPrimitive primitive, Buffer out) {
+    if (primitive.isBoolean()) {
+      out.writeByte(primitive.getAsBoolean() ? 0xf5 : 0xf4);
+    }
+    else if (primitive.isString()) {
+      writeText(out, primitive.getAsString());
+    }
+    else {
+      final double value = primitive.getAsDouble();
+      if (value == Math.rint(value) && Math.abs(value) < (1L << 53)) {
+        final long l = (long) value;
+        if (l >= 0) {
+          writeHead(out, 0, l);
+        }
+        else {
+          writeHead(out, 1, -1 - l);
+        }
+      }
+      else if ((float) value == value) {
+        out.writeByte(0xfa);
+        out.writeInt(Float.floatToIntBits((float) value));
+      }
+      else {
+        out.writeByte(0xfb);
+        out.writeLong(Double.doubleToLongBits(value));
+      }
+    }
+  }
+
+  private static void writeText(Buffer out, String text) {
+    final Buffer utf8 = new Buffer().writeUtf8(text);
+    writeHead(out, 3, utf8.size());
+    out.write(utf8, utf8.size());
+  }
+
+  private static void writeHead(Buffer out, int major, long value) {
+    final int type = major << 5;
+    if (value < 24) {
+      out.writeByte(type | (int) value);
+    }
+    else if (value <= 0xff) {
+      out.writeByte(type | 24);
+      out.writeByte((int) value);
+    }
+    else if (value <= 0xffff) {
+      out.writeByte(type | 25);
+      out.writeShort((int) value);
+    }
+    else if (value <= 0xffffffffL) {
+      out.writeByte(type | 26);
+      out.writeInt((int) value);
+    }
+    else {
+      out.writeByte(type | 27);
+      out.writeLong(value);
+    }
+  }
+}
@@ -0,0 +1,289 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data.api;
+
+import com.imgtec.sesame.data.api.CircuitBreakerInterceptor.Circuit;
+import com.imgtec.sesame.data.api.CircuitBreakerInterceptor.CircuitOpenException;
+import com.imgtec.sesame.data.api.CircuitBreakerInterceptor.Permit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import static com.imgtec.sesame.data.api.CircuitBreakerInterceptor.FAILURE_THRESHOLD;
+import static com.imgtec.sesame.data.api.CircuitBreakerInterceptor.MAX_OPEN_DURATION;
+import static com.imgtec.sesame.data.api.CircuitBreakerInterceptor.OPEN_DURATION;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests transitions of {@link CircuitBreakerInterceptor} circuit and the interceptor against
+ * local server.
+ */
+public class CircuitBreakerInterceptorTest {
+
+  private static final long NOW = 1000000;
+
+  private MockWebServer server;
+  private OkHttpClient client;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockWebServer();
+    server.start();
+    client = new OkHttpClient.Builder()
+        .addInterceptor(new CircuitBreakerInterceptor())
+        .build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  @Test
+  public void staysClosedBelowThreshold() {
+    final Circuit circuit = new Circuit();
+    for (int i = 0; i < FAILURE_THRESHOLD - 1; i++) {
+      assertFalse(circuit.onFailure(Permit.CLOSED, NOW));
+    }
+
+    assertEquals(0, circuit.acquire(NOW).retryIn);
+  }
+
+  @Test
+  public void successResetsFailures() {
+    final Circuit circuit = new Circuit();
+    for (int i = 0; i < FAILURE_THRESHOLD - 1; i++) {
+      circuit.onFailure(Permit.CLOSED, NOW);
+    }
+    circuit.onSuccess();
+
+    assertFalse(circuit.onFailure(Permit.CLOSED, NOW));
+    assertEquals(0, circuit.acquire(NOW).retryIn);
+  }
+
+  @Test
+  public void opensAfterThreshold() {
+    final Circuit circuit = open();
+
+    assertEquals(OPEN_DURATION, circuit.acquire(NOW).retryIn);
+    assertEquals(OPEN_DURATION - 4000, circuit.acquire(NOW + 4000).retryIn);
+  }
+
+  @Test
+  public void halfOpenCircuitLetsSingleTrialThrough() {
+    final Circuit circuit = open();
+
+    assertEquals(0, circuit.acquire(NOW + OPEN_DURATION).retryIn);
+    assertTrue(circuit.acquire(NOW + OPEN_DURATION).retryIn > 0);
+  }
+
+  @Test
+  public void successfulTrialClosesCircuit() {
+    final Circuit circuit = open();
+    circuit.acquire(NOW + OPEN_DURATION);
+
+    circuit.onSuccess();
+
+    assertEquals(0, circuit.acquire(NOW + OPEN_DURATION).retryIn);
+    assertEquals(0, circuit.acquire(NOW + OPEN_DURATION).retryIn);
+    // counting starts over
+    assertFalse(circuit.onFailure(Permit.CLOSED, NOW + OPEN_DURATION));
+  }
+
+  @Test
+  public void failedTrialOpensCircuitForTwiceAsLong() {
+    final Circuit circuit = open();
+    final long trialAt = NOW + OPEN_DURATION;
+    final Permit trial = circuit.acquire(trialAt);
+
+    assertTrue(circuit.onFailure(trial, trialAt));
+
+    assertEquals(2 * OPEN_DURATION, circuit.acquire(trialAt).retryIn);
+    assertEquals(0, circuit.acquire(trialAt + 2 * OPEN_DURATION).retryIn);
+  }
+
+  @Test
+  public void openDurationIsCapped() {
+    final Circuit circuit = open();
+    long now = NOW;
+    long duration = OPEN_DURATION;
+    for (int i = 0; i < 10; i++) {
+      now += duration;
+      final Permit trial = circuit.acquire(now);
+      assertEquals(0, trial.retryIn);
+      circuit.onFailure(trial, now);
+      duration = circuit.acquire(now).retryIn;
+    }
+
+    assertEquals(MAX_OPEN_DURATION, duration);
+  }
+
+  @Test
+  public void releasedTrialLetsAnotherOneThrough() {
+    final Circuit circuit = open();
+    final Permit trial = circuit.acquire(NOW + OPEN_DURATION);
+
+    circuit.release(trial);
+
+    assertEquals(0, circuit.acquire(NOW + OPEN_DURATION).retryIn);
+  }
+
+  @Test
+  public void releasedRequestStartedBeforeOpeningKeepsTrial() {
+    final Circuit circuit = open();
+    circuit.acquire(NOW + OPEN_DURATION);
+
+    circuit.release(Permit.CLOSED);
+
+    assertTrue(circuit.acquire(NOW + OPEN_DURATION).retryIn > 0);
+  }
+
+  @Test
+  public void failureOfRequestStartedBeforeOpeningDoesNotEndTrial() {
+    final Circuit circuit = open();
+    final Permit trial = circuit.acquire(NOW + OPEN_DURATION);
+
+    assertFalse(circuit.onFailure(Permit.CLOSED, NOW + OPEN_DURATION));
+
+    assertTrue(circuit.acquire(NOW + OPEN_DURATION).retryIn > 0);
+    assertTrue(circuit.onFailure(trial, NOW + OPEN_DURATION));
+  }
+
+  @Test
+  public void failureOfRequestStartedBeforeOpeningIsIgnored() {
+    final Circuit circuit = open();
+
+    assertFalse(circuit.onFailure(Permit.CLOSED, NOW + 1000));
+    assertEquals(OPEN_DURATION, circuit.acquire(NOW).retryIn);
+  }
+
+  @Test
+  public void openCircuitFailsRequestsWithoutSendingThem() throws Exception {
+    for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+      server.enqueue(new MockResponse().setResponseCode(503));
+      execute(new Request.Builder().url(server.url("/doors")).build()).close();
+    }
+
+    try {
+      execute(new Request.Builder().url(server.url("/doors")).build());
+      fail("Request went through open circuit");
+    }
+    catch (CircuitOpenException e) {
+      assertEquals(FAILURE_THRESHOLD, server.getRequestCount());
+    }
+  }
+
+  @Test
+  public void canceledCallsAreNotCounted() throws Exception {
+    final Call.Factory factory = new CircuitBreakerInterceptor.CallFactory(client);
+    for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+      server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+      final CountDownLatch failed = new CountDownLatch(1);
+      final Call call = factory.newCall(new Request.Builder().url(server.url("/doors")).build());
+      call.enqueue(new Callback() {
+        @Override
+        public void onFailure(Call call, IOException e) {
+          failed.countDown();
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) {
+          response.close();
+        }
+      });
+      server.takeRequest();
+      call.cancel();
+      assertTrue(failed.await(5, TimeUnit.SECONDS));
+    }
+    server.enqueue(new MockResponse());
+
+    final Response response = execute(new Request.Builder().url(server.url("/doors")).build());
+    response.close();
+
+    assertEquals(200, response.code());
+  }
+
+  @Test
+  public void untrackedRequestBypassesCircuit() throws Exception {
+    for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+      server.enqueue(new MockResponse().setResponseCode(503));
+      execute(new Request.Builder().url(server.url("/doors")).build()).close();
+    }
+    server.enqueue(new MockResponse().setResponseCode(405));
+
+    final Response probe = execute(new Request.Builder()
+        .url(server.url("/"))
+        .head()
+        .tag(CircuitBreakerInterceptor.UNTRACKED)
+        .build());
+    probe.close();
+
+    assertEquals(405, probe.code());
+    try {
+      // response to the probe did not close the circuit
+      execute(new Request.Builder().url(server.url("/doors")).build());
+      fail("Request went through open circuit");
+    }
+    catch (CircuitOpenException expected) {
+    }
+  }
+
+  private Response execute(Request request) throws Exception {
+    return client.newCall(request).execute();
+  }
+
+  private static Circuit open() {
+    final Circuit circuit = new Circuit();
+    for (int i = 0; i < FAILURE_THRESHOLD - 1; i++) {
+      circuit.onFailure(Permit.CLOSED, NOW);
+    }
+    assertTrue(circuit.onFailure(Permit.CLOSED, NOW));
+    return circuit;
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.http.GET;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link HedgePolicy} and latencies {@link HedgedCall} feeds it with.
+ */
+public class HedgePolicyTest {
+
+  private static final Request STATE = new Request.Builder()
+      .url("http://localhost/doors/state")
+      .build();
+
+  interface StateService {
+    @GET("doors/state")
+    Call<ResponseBody> state();
+  }
+
+  private final CountDownLatch release = new CountDownLatch(1);
+  private MockWebServer server;
+  private ScheduledExecutorService executor;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockWebServer();
+    server.start();
+    executor = Executors.newSingleThreadScheduledExecutor();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    release.countDown();
+    executor.shutdownNow();
+    server.shutdown();
+  }
+
+  @Test
+  public void callIsNotHedgedUntilEnoughSamples() {
+    final HedgePolicy policy = new HedgePolicy(0.95, 0.1);
+    for (int i = 0; i < HedgePolicy.MIN_SAMPLES - 1; i++) {
+      assertEquals(-1, policy.hedgeDelay(STATE));
+      policy.onResponse(STATE, 100, false);
+    }
+    policy.onResponse(STATE, 100, false);
+
+    assertEquals(100, policy.hedgeDelay(STATE));
+  }
+
+  @Test
+  public void hedgeDelayIsPercentileOfLatencies() {
+    final HedgePolicy policy = new HedgePolicy(0.9, 0.1);
+    for (int i = 1; i <= 20; i++) {
+      policy.onResponse(STATE, i * 10, false);
+    }
+
+    assertEquals(180, policy.hedgeDelay(STATE));
+  }
+
+  @Test
+  public void hedgeDelayHasLowerBound() {
+    final HedgePolicy policy = new HedgePolicy(0.95, 0.1);
+    for (int i = 0; i < HedgePolicy.MIN_SAMPLES; i++) {
+      policy.onResponse(STATE, 1, false);
+    }
+
+    assertEquals(HedgePolicy.MIN_DELAY, policy.hedgeDelay(STATE));
+  }
+
+  @Test
+  public void hedgesAreLimitedByBudget() {
+    final HedgePolicy policy = new HedgePolicy(0.95, 0.1);
+    // a little more than one hedge earned
+    for (int i = 0; i < 11; i++) {
+      policy.hedgeDelay(STATE);
+    }
+
+    assertTrue(policy.acquireHedge());
+    assertFalse(policy.acquireHedge());
+    assertEquals(1, policy.getMetrics().getHedgedCount());
+    assertEquals(1, policy.getMetrics().getDeniedCount());
+  }
+
+  @Test
+  public void zeroBudgetDisablesHedging() {
+    final HedgePolicy policy = new HedgePolicy(0.95, 0);
+    for (int i = 0; i < HedgePolicy.MIN_SAMPLES; i++) {
+      policy.onResponse(STATE, 100, false);
+    }
+
+    assertEquals(-1, policy.hedgeDelay(STATE));
+  }
+
+  @Test
+  public void winningHedgeIsMeasuredFromPrimaryRequest() throws Exception {
+    final AtomicInteger requests = new AtomicInteger();
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        if (requests.getAndIncrement() == 0) {
+          // primary hangs
+          release.await(5, TimeUnit.SECONDS);
+        }
+        return new MockResponse().setBody("opened");
+      }
+    });
+    final StateService service = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .callbackExecutor(Runnable::run)
+        .build()
+        .create(StateService.class);
+
+    // minimum of latencies: hedge goes out after 100ms
+    final HedgePolicy policy = new HedgePolicy(0, 1);
+    for (int i = 0; i < HedgePolicy.MIN_SAMPLES; i++) {
+      policy.onResponse(STATE, 100, false);
+    }
+
+    final BlockingQueue<Object> results = new LinkedBlockingQueue<>();
+    new HedgedCall<>(service.state(), policy, executor).enqueue(new Callback<ResponseBody>() {
+      @Override
+      public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
+        response.body().close();
+        results.add(response);
+      }
+
+      @Override
+      public void onFailure(Call<ResponseBody> call, Throwable t) {
+        results.add(t);
+      }
+    });
+
+    assertTrue(results.poll(5, TimeUnit.SECONDS) instanceof Response);
+    assertEquals(1, policy.getMetrics().getHedgeWinCount());
+    // hedge answering at once took 100ms from the caller's point of view
+    assertTrue(policy.hedgeDelay(STATE) >= 100);
+  }
+}
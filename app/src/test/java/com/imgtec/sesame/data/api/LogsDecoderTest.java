@@ -0,0 +1,144 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+
+package com.imgtec.sesame.data.api;
+
+import com.google.gson.Gson;
+import com.imgtec.sesame.data.api.pojo.Log;
+import com.imgtec.sesame.data.api.pojo.Logs;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okio.Buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests streamed decoding of logs pages by {@link LogsDecoder}.
+ */
+public class LogsDecoderTest {
+
+  private static final MediaType JSON = MediaType.parse("application/json");
+
+  private final Batches batches = new Batches();
+
+  @Test
+  public void deliversItemsInBatches() throws Exception {
+    final LogsDecoder decoder = new LogsDecoder(new Gson(), 100, 1024 * 1024);
+
+    final Logs logs = decoder.decode(page(25), JSON, batches);
+
+    assertEquals(3, batches.size());
+    assertEquals(LogsDecoder.BATCH_SIZE, batches.get(0).size());
+    assertEquals(5, batches.get(2).size());
+    assertEquals("action24", batches.get(2).get(4).getAction());
+    // fields following the items are still decoded
+    assertEquals(Integer.valueOf(25), logs.getPageInfo().getTotalCount());
+    assertEquals("/logs?startIndex=25", logs.getLinkByRel("next").getHref());
+  }
+
+  @Test
+  public void stopsAtItemLimit() throws Exception {
+    final LogsDecoder decoder = new LogsDecoder(new Gson(), 12, 1024 * 1024);
+
+    final Logs logs = decoder.decode(page(25), JSON, batches);
+
+    assertEquals(12, batches.items());
+    assertEquals(2, batches.get(1).size());
+    // rest of the page is dropped
+    assertNull(logs.getPageInfo());
+  }
+
+  @Test
+  public void stopsAtByteLimit() throws Exception {
+    final Buffer page = page(2000);
+    final LogsDecoder decoder = new LogsDecoder(new Gson(), 10000, 16 * 1024);
+
+    decoder.decode(page, JSON, batches);
+
+    assertTrue(batches.items() > 0);
+    assertTrue(batches.items() < 2000);
+    // rest of the page is not read from the source
+    assertTrue(page.size() > 0);
+  }
+
+  @Test
+  public void emptyPageDeliversNothing() throws Exception {
+    final LogsDecoder decoder = new LogsDecoder(new Gson(), 100, 1024 * 1024);
+
+    decoder.decode(page(0), JSON, batches);
+
+    assertEquals(0, batches.size());
+  }
+
+  /**
+   * @return page with items first, page info and links last
+   */
+  private static Buffer page(int items) {
+    final StringBuilder json = new StringBuilder("{\"items\":[");
+    for (int i = 0; i < items; i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append("{\"date\":\"2017-01-01T10:00:00\",\"action\":\"action").append(i).append("\"}");
+    }
+    json.append("],\"PageInfo\":{\"TotalCount\":").append(items)
+        .append(",\"ItemsCount\":").append(items).append(",\"StartIndex\":0}")
+        .append(",\"links\":[{\"rel\":\"next\",\"href\":\"/logs?startIndex=").append(items)
+        .append("\"}]}");
+    return new Buffer().writeUtf8(json.toString());
+  }
+
+  static class Batches extends ArrayList<List<Log>> implements LogsDecoder.Consumer {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public void onLogs(List<Log> logs) {
+      add(logs);
+    }
+
+    int items() {
+      int count = 0;
+      for (List<Log> batch : this) {
+        count += batch.size();
+      }
+      return count;
+    }
+  }
+}
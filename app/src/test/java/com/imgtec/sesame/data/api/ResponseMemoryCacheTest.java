@@ -0,0 +1,186 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+
+package com.imgtec.sesame.data.api;
+
+import com.google.gson.Gson;
+import com.imgtec.sesame.data.api.pojo.DoorsState;
+import com.imgtec.sesame.data.api.pojo.DoorsStatistics;
+
+import org.junit.After;
+import org.junit.Test;
+
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests freshness, eviction and copying of bodies in {@link ResponseMemoryCache} and its use
+ * by {@link MemoryCachedCall}.
+ */
+public class ResponseMemoryCacheTest {
+
+  private static final String STATS = "{\"since\":\"2017-01-11\",\"opening\":{\"avg\":4.2}}";
+
+  private final Gson gson = new Gson();
+  private MockWebServer server;
+
+  @After
+  public void tearDown() throws Exception {
+    if (server != null) {
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void freshResponseIsServedFromMemoryAsCopy() throws Exception {
+    final ResponseMemoryCache cache = new ResponseMemoryCache(gson, 64 * 1024);
+    final RestApiService api = start(cache);
+    server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=60").setBody(STATS));
+    final String url = server.url("/doors/stats").toString();
+
+    final DoorsStatistics first = api.statistics(url).execute().body();
+    first.setSince("modified by the caller");
+    final retrofit2.Response<DoorsStatistics> second = api.statistics(url).execute();
+
+    assertEquals(1, server.getRequestCount());
+    assertNull(second.raw().networkResponse());
+    assertNotSame(first, second.body());
+    assertEquals("2017-01-11", second.body().getSince());
+    assertEquals(4.2, second.body().getOpening().getAvg(), 0);
+  }
+
+  @Test
+  public void successfulCommandEvictsAll() throws Exception {
+    final ResponseMemoryCache cache = new ResponseMemoryCache(gson, 64 * 1024);
+    final RestApiService api = start(cache);
+    server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=60").setBody(STATS));
+    server.enqueue(new MockResponse().setResponseCode(204));
+    final String url = server.url("/doors/stats").toString();
+
+    api.statistics(url).execute();
+    api.deleteStatistics(url).execute();
+
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void responseWhichMustBeRevalidatedIsNotStored() {
+    final ResponseMemoryCache cache = new ResponseMemoryCache(gson, 64 * 1024);
+
+    cache.put("/logs", response("no-cache", 100, System.currentTimeMillis()), state("opened"));
+
+    assertNull(cache.get("/logs"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void expiredEntryIsDropped() throws Exception {
+    final ResponseMemoryCache cache = new ResponseMemoryCache(gson, 64 * 1024);
+    cache.put("/state", response("max-age=1", 100, System.currentTimeMillis() - 950),
+        state("opened"));
+    assertNotNull(cache.get("/state"));
+
+    Thread.sleep(100);
+
+    assertNull(cache.get("/state"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void sizeIsEstimatedFromContentLength() {
+    final ResponseMemoryCache cache = new ResponseMemoryCache(gson, 64 * 1024);
+
+    cache.put("/state", response("max-age=60", 1000, System.currentTimeMillis()), state("opened"));
+
+    assertEquals(ResponseMemoryCache.ENTRY_OVERHEAD + 2 * 1000, cache.size());
+  }
+
+  @Test
+  public void leastRecentlyUsedEntryIsEvicted() {
+    final int entrySize = ResponseMemoryCache.ENTRY_OVERHEAD + 2 * 1000;
+    final ResponseMemoryCache cache = new ResponseMemoryCache(gson, 3 * entrySize);
+    final long now = System.currentTimeMillis();
+    cache.put("/a", response("max-age=60", 1000, now), state("a"));
+    cache.put("/b", response("max-age=60", 1000, now), state("b"));
+    cache.put("/c", response("max-age=60", 1000, now), state("c"));
+    cache.get("/a");
+
+    cache.put("/d", response("max-age=60", 1000, now), state("d"));
+
+    assertNull(cache.get("/b"));
+    assertEquals("a", ((DoorsState) cache.get("/a").getBody()).getState());
+    assertNotNull(cache.get("/c"));
+    assertNotNull(cache.get("/d"));
+    assertEquals(3 * entrySize, cache.size());
+  }
+
+  private RestApiService start(ResponseMemoryCache cache) throws Exception {
+    server = new MockWebServer();
+    server.start();
+    return new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .addConverterFactory(GsonConverterFactory.create(gson))
+        .addCallAdapterFactory(MemoryCacheCallAdapterFactory.create(cache))
+        .build()
+        .create(RestApiService.class);
+  }
+
+  private static Response response(String cacheControl, int length, long receivedAt) {
+    return new Response.Builder()
+        .request(new Request.Builder().url("http://example.com/").build())
+        .protocol(Protocol.HTTP_1_1)
+        .code(200)
+        .message("OK")
+        .header("Cache-Control", cacheControl)
+        .body(ResponseBody.create(null, new byte[length]))
+        .sentRequestAtMillis(receivedAt)
+        .receivedResponseAtMillis(receivedAt)
+        .build();
+  }
+
+  private static DoorsState state(String value) {
+    final DoorsState state = new DoorsState();
+    state.setState(value);
+    return state;
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.imgtec.sesame.data.api;
+
+import com.imgtec.sesame.data.api.RttEstimator.Estimate;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests round trip time estimation of {@link RttEstimator}.
+ */
+public class RttEstimatorTest {
+
+  private MockWebServer server;
+  private RttEstimator estimator;
+  private OkHttpClient client;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockWebServer();
+    server.start();
+    estimator = new RttEstimator();
+    client = new OkHttpClient.Builder()
+        .addNetworkInterceptor(estimator)
+        .readTimeout(200, TimeUnit.MILLISECONDS)
+        .build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  @Test
+  public void firstSampleSetsEstimate() {
+    final Estimate estimate = new Estimate();
+    estimate.onSample(1000);
+
+    assertEquals(1000, estimate.getSmoothedRtt());
+    assertEquals(500, estimate.getRttVariation());
+  }
+
+  @Test
+  public void samplesAreSmoothed() {
+    final Estimate estimate = new Estimate();
+    estimate.onSample(1000);
+    estimate.onSample(1800);
+
+    // srtt += (1800 - 1000) / 8, rttvar += (800 - 500) / 4
+    assertEquals(1100, estimate.getSmoothedRtt());
+    assertEquals(575, estimate.getRttVariation());
+  }
+
+  @Test
+  public void timeoutNeedsEnoughSamples() {
+    final Estimate estimate = new Estimate();
+    for (int i = 0; i < RttEstimator.MIN_SAMPLES - 1; i++) {
+      estimate.onSample(1000);
+      assertEquals(-1, estimate.getTimeout());
+    }
+    estimate.onSample(1000);
+
+    assertEquals(1000 + 4 * 282, estimate.getTimeout());
+  }
+
+  @Test
+  public void timeoutsBackOffUntilNextSample() {
+    final Estimate estimate = estimate(1000, 1000, 1000);
+
+    estimate.onTimeout();
+    assertEquals(2 * (1000 + 4 * 282), estimate.getTimeout());
+    for (int i = 0; i < 10; i++) {
+      estimate.onTimeout();
+    }
+    assertEquals(RttEstimator.MAX_TIMEOUT, estimate.getTimeout());
+
+    estimate.onSample(4000);
+    assertEquals(1375 + 4 * 961, estimate.getTimeout());
+  }
+
+  @Test
+  public void timeoutHasLowerBound() {
+    assertEquals(RttEstimator.MIN_TIMEOUT, estimate(10, 10, 10).getTimeout());
+  }
+
+  @Test
+  public void responseIsSampledPerHost() throws Exception {
+    server.enqueue(new MockResponse());
+    assertNull(estimator.getEstimate(server.url("/")));
+
+    client.newCall(new Request.Builder().url(server.url("/state")).build()).execute().close();
+
+    assertEquals(1, estimator.getEstimate(server.url("/logs")).getSampleCount());
+    assertNull(estimator.getEstimate(server.url("/").newBuilder().port(1).build()));
+  }
+
+  @Test
+  public void timedOutRequestIsNotSampled() throws Exception {
+    server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+
+    try {
+      client.newCall(new Request.Builder().url(server.url("/state")).build()).execute();
+      fail("Request did not time out");
+    }
+    catch (SocketTimeoutException expected) {
+    }
+
+    assertEquals(0, estimator.getEstimate(server.url("/")).getSampleCount());
+  }
+
+  private static Estimate estimate(long... samples) {
+    final Estimate estimate = new Estimate();
+    for (long sample : samples) {
+      estimate.onSample(sample);
+    }
+    return estimate;
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+
+package com.imgtec.sesame.data.api.pojo;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParser;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests that {@link PojoTypeAdapterFactory} reads and writes the same JSON as reflective Gson.
+ */
+public class PojoTypeAdapterFactoryTest {
+
+  private static final String LINKS =
+      "\"links\":[{\"rel\":\"self\",\"href\":\"/doors\",\"type\":\"application/json\"}]";
+
+  private final Gson reflective = new Gson();
+  private final Gson adapted = new GsonBuilder()
+      .registerTypeAdapterFactory(new PojoTypeAdapterFactory())
+      .create();
+
+  @Test
+  public void entrypointRoundTrip() {
+    assertRoundTrip(Api.class, "{" + LINKS + "}");
+    assertRoundTrip(DoorsEntrypoint.class, "{" + LINKS + ",\"unknown\":{\"nested\":[1,2]}}");
+  }
+
+  @Test
+  public void stateRoundTrip() {
+    assertRoundTrip(DoorsState.class, "{\"state\":\"opened\"}");
+    assertRoundTrip(DoorsAction.class, "{\"count\":3," + LINKS + "}");
+  }
+
+  @Test
+  public void statisticsRoundTrip() {
+    assertRoundTrip(DoorsStatistics.class, "{\"since\":\"2017-01-01\","
+        + "\"opening\":{\"min\":1.5,\"max\":12,\"avg\":4.25},"
+        + "\"closing\":{\"min\":null,\"avg\":2}," + LINKS + "}");
+  }
+
+  @Test
+  public void logsRoundTrip() {
+    assertRoundTrip(Logs.class, "{\"PageInfo\":{\"TotalCount\":40,\"ItemsCount\":2,"
+        + "\"StartIndex\":0},\"items\":[{\"date\":\"2017-01-01T10:00:00\",\"action\":\"open\"},"
+        + "{\"action\":null}]," + LINKS + "}");
+  }
+
+  @Test
+  public void missingNumbersStayNull() {
+    final StatsEntry entry = adapted.fromJson("{\"min\":null,\"avg\":2}", StatsEntry.class);
+
+    assertNull(entry.getMin());
+    assertNull(entry.getMax());
+    assertEquals(2, entry.getAvg(), 0);
+  }
+
+  /**
+   * Pojo decoded by the adapters encodes to the same JSON as the one decoded reflectively,
+   * whichever of the two encodes it.
+   */
+  private <T> void assertRoundTrip(Class<T> type, String json) {
+    final JsonParser parser = new JsonParser();
+    final String expected = reflective.toJson(reflective.fromJson(json, type));
+    final T value = adapted.fromJson(json, type);
+
+    assertEquals(parser.parse(expected), parser.parse(adapted.toJson(value)));
+    assertEquals(parser.parse(expected), parser.parse(reflective.toJson(value)));
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * <b>Copyright (c) 2017, Imagination Technologies Limited and/or its affiliated group companies
+ *  and/or licensors. </b>
+ *
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without modification, are permitted
+ *  provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ *      and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ *      conditions and the following disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *
+ *  3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ *      endorse or promote products derived from this software without specific prior written
+ *      permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ *  FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ *  CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ *  DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ *  WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ *  WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+
+package com.imgtec.sesame.presentation.helpers;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests which bursts of connectivity broadcasts {@link SettledNetwork} reports as changes.
+ */
+public class SettledNetworkTest {
+
+  private static final int WIFI = 1;
+  private static final int MOBILE = 0;
+  private static final String HOME_WIFI = WIFI + ":0:\"home\"";
+  private static final String LTE = MOBILE + ":13:internet";
+
+  @Test
+  public void burstEndingOnSameNetworkIsNotReported() {
+    final SettledNetwork network = new SettledNetwork(HOME_WIFI);
+
+    assertFalse(network.settle(HOME_WIFI));
+  }
+
+  @Test
+  public void handoverIsReportedOnce() {
+    final SettledNetwork network = new SettledNetwork(HOME_WIFI);
+
+    assertTrue(network.settle(LTE));
+    assertEquals(LTE, network.get());
+    assertFalse(network.settle(LTE));
+  }
+
+  @Test
+  public void lossOfActiveNetworkIsReportedEvenIfItComesBack() {
+    final SettledNetwork network = new SettledNetwork(HOME_WIFI);
+    network.onDisconnected(WIFI);
+
+    assertTrue(network.settle(HOME_WIFI));
+    // interruption is reported with the burst it happened in only
+    assertFalse(network.settle(HOME_WIFI));
+  }
+
+  @Test
+  public void lossOfInactiveNetworkIsIgnored() {
+    final SettledNetwork network = new SettledNetwork(HOME_WIFI);
+    network.onDisconnected(MOBILE);
+
+    assertFalse(network.settle(HOME_WIFI));
+  }
+
+  @Test
+  public void goingOfflineAndBackIsReported() {
+    final SettledNetwork network = new SettledNetwork(null);
+    assertFalse(network.settle(null));
+
+    assertTrue(network.settle(HOME_WIFI));
+    assertTrue(network.settle(null));
+    assertNull(network.get());
+  }
+}